@@ -7,6 +7,8 @@ import android.content.Intent;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
@@ -22,13 +24,10 @@ import com.romanbrunner.apps.projecttimetracker.util.PreferencesManager;
 import com.romanbrunner.apps.projecttimetracker.util.TimeUtils;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manager class for control panel functionality.
@@ -106,27 +105,43 @@ public class ControlPanelManager
     private int nextReminderSeconds = 0;
     private boolean isRunning = false;
     private boolean isPaused = false;
+    private boolean isResumed = false;
+    private boolean isVisible = true;
+    private boolean isTicking = false;
     private Date flashUntilDatetime = null;
     private boolean isInitialSetup = true;
+    private boolean isSelectionChanged = false;  // Whether the user picked a category, project or sort order in this session
     private TimePoolsManager poolsManager = null;
     private SortOrder categorySortOrder = SortOrder.ALPHABETICAL;
     private SortOrder projectSortOrder = SortOrder.ALPHABETICAL;
 
-    // Handler for periodic updates:
+    // Tick snapshot, refreshed when the selection or entries change so each tick only adds the live duration:
+    private long baseProjectSeconds = 0;
+    private long baseCategorySeconds = 0;
+    private boolean isPoolActive = false;
+    private long basePoolRemainingSeconds = 0;
+    private long poolSnapshotExpiryMillis = Long.MAX_VALUE;
+    private int poolPositiveColor;
+    private int poolNegativeColor;
+    private final char[] currentDurationBuffer = new char[TimeUtils.MAX_DURATION_LENGTH];
+    private final char[] projectDurationBuffer = new char[TimeUtils.MAX_DURATION_LENGTH];
+    private final char[] categoryDurationBuffer = new char[TimeUtils.MAX_DURATION_LENGTH];
+    private final char[] poolTimeBuffer = new char[TimeUtils.MAX_DURATION_LENGTH];
+
+    // Handler for periodic updates, only ticking while the timer runs and the control panel is shown:
     private final Handler handler = new Handler(Looper.getMainLooper());
     private final Runnable updateRunnable = new Runnable()
     {
         @Override
         public void run()
         {
-            if (isRunning && !isPaused)
-            {
-                updateCurrentDuration();
-            }
-            handler.postDelayed(this, UPDATE_INTERVAL);
+            updateCurrentDuration();
+            handler.postDelayed(this, getMillisUntilNextTick());
         }
     };
 
+    private final Runnable reminderRunnable = () -> { if (isRunning && !isPaused && reminderIntervalSeconds > 0) scheduleNextReminder(); };
+
     private final Runnable flashRunnable = new Runnable()
     {
         @Override
@@ -216,6 +231,8 @@ public class ControlPanelManager
 
     public void initialize()
     {
+        poolPositiveColor = context.getResources().getColor(R.color.pool_positive, null);
+        poolNegativeColor = context.getResources().getColor(R.color.pool_negative, null);
         restoreSortOrders();
         setupButtonListeners();
         setupSpinners();
@@ -224,7 +241,7 @@ public class ControlPanelManager
         updatePoolTime();
         restoreReminderInterval();
         isInitialSetup = false;
-        handler.post(updateRunnable);
+        updateTicker();
     }
 
     public void onDestroy()
@@ -237,6 +254,7 @@ public class ControlPanelManager
     public void onResume()
     {
         currentInstance = this;
+        isResumed = true;
         // Preserve current spinner values across pause/resume:
         String currentCategory = spinnerCategory.getText().toString();
         String currentProject = spinnerProject.getText().toString();
@@ -251,11 +269,60 @@ public class ControlPanelManager
         {
             spinnerProject.setText(currentProject, false);
         }
+        updateTicker();
     }
 
     public void onPause()
     {
         currentInstance = null;
+        isResumed = false;
+        updateTicker();
+    }
+
+    /**
+     * Informs the manager whether the control panel card is currently shown.
+     */
+    public void setVisible(boolean visible)
+    {
+        isVisible = visible;
+        if (visible)
+        {
+            refreshSnapshot();  // Entries or pools may have changed while hidden
+        }
+        updateTicker();
+    }
+
+    /**
+     * Starts or stops the ticker to match timer state and visibility, ticking immediately when it starts.
+     */
+    private void updateTicker()
+    {
+        boolean shouldTick = isRunning && !isPaused && isResumed && isVisible;
+        if (shouldTick == isTicking)
+        {
+            return;
+        }
+        isTicking = shouldTick;
+        if (shouldTick)
+        {
+            handler.post(updateRunnable);
+        }
+        else
+        {
+            handler.removeCallbacks(updateRunnable);
+        }
+    }
+
+    /**
+     * Aligns ticks to the second boundaries of the running session.
+     */
+    private long getMillisUntilNextTick()
+    {
+        if (currentStartDatetime == null)
+        {
+            return UPDATE_INTERVAL;
+        }
+        return UPDATE_INTERVAL - (System.currentTimeMillis() - currentStartDatetime.getTime()) % UPDATE_INTERVAL;
     }
 
     private void setupButtonListeners()
@@ -293,16 +360,31 @@ public class ControlPanelManager
         spinnerEndAt.setAdapter(endAtAdapter);
         spinnerEndAt.setThreshold(Integer.MAX_VALUE);
         spinnerEndAt.setText(endAtChoices[0], false);
-        // Project and category spinners:
+        // Project and category spinners, whose snapshot follows every text change since names can also be typed:
+        TextWatcher snapshotWatcher = new TextWatcher()
+        {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s)
+            {
+                refreshSnapshot();
+            }
+        };
+        spinnerProject.addTextChangedListener(snapshotWatcher);
+        spinnerCategory.addTextChangedListener(snapshotWatcher);
         spinnerProject.setOnItemClickListener((parent, view, position, id) ->
         {
             String selectedProject = spinnerProject.getText().toString();
             if (!isInitialSetup)
             {
                 preferencesManager.setLastProject(selectedProject);
+                isSelectionChanged = true;
             }
-            updateTotalDurations();
-            updatePoolTime();
         });
         spinnerCategory.setOnItemClickListener((parent, view, position, id) ->
         {
@@ -310,11 +392,10 @@ public class ControlPanelManager
             if (!isInitialSetup)
             {
                 preferencesManager.setLastCategory(selectedCategory);
+                isSelectionChanged = true;
             }
             restoreReminderInterval();
             updateProjectsForCategory();
-            updateTotalDurations();
-            updatePoolTime();
         });
     }
 
@@ -390,6 +471,7 @@ public class ControlPanelManager
 
         // Clear current selection so updateSpinnerData/updateProjectsForCategory picks the first entry:
         spinner.setText("", false);
+        isSelectionChanged = true;
 
         if (isCategory)
         {
@@ -425,24 +507,10 @@ public class ControlPanelManager
         switch (sortOrder)
         {
             case MOST_USED:
-                Map<String, Long> durationMap = new HashMap<>();
-                for (String item : items)
-                {
-                    long duration = timeEntryRepository.getTotalDurationForField(
-                        item, isCategory ? TimeEntry::getCategory : TimeEntry::getProject);
-                    durationMap.put(item, duration);
-                }
-                items.sort(Comparator.comparingLong((String item) -> durationMap.getOrDefault(item, 0L)).reversed());
+                timeEntryRepository.sortByTotalDuration(items, isCategory);
                 break;
             case LAST_USED:
-                Map<String, Date> lastUsedMap = new HashMap<>();
-                for (String item : items)
-                {
-                    Date lastUsed = timeEntryRepository.getLatestStartDateForField(
-                        item, isCategory ? TimeEntry::getCategory : TimeEntry::getProject);
-                    lastUsedMap.put(item, lastUsed);
-                }
-                items.sort(Comparator.comparing((String item) -> lastUsedMap.getOrDefault(item, new Date(0))).reversed());
+                timeEntryRepository.sortByLastUsed(items, isCategory);
                 break;
             case ALPHABETICAL:
             default:
@@ -451,9 +519,29 @@ public class ControlPanelManager
         }
     }
 
+    /**
+     * Selects the saved category and project again once all entries are loaded, unless the user changed the selection or a timer runs.
+     * On the first start after an upgrade there are no saved names yet, so the initial setup could not find them.
+     */
+    public void restoreSavedSelection()
+    {
+        String lastCategory = preferencesManager.getLastCategory();
+        boolean isRestored = lastCategory.equals(spinnerCategory.getText().toString()) && preferencesManager.getLastProject().equals(spinnerProject.getText().toString());
+        if (isSelectionChanged || isRunning || lastCategory.isEmpty() || isRestored)
+        {
+            return;
+        }
+        isInitialSetup = true;
+        spinnerCategory.setText("", false);
+        spinnerProject.setText("", false);
+        updateSpinnerData();
+        restoreReminderInterval();
+        isInitialSetup = false;
+    }
+
     public void updateSpinnerData()
     {
-        List<String> categories = new ArrayList<>(timeEntryRepository.getAllValuesForField(TimeEntry::getCategory, TimeEntryRepository.DEFAULT_CATEGORY));
+        List<String> categories = new ArrayList<>(timeEntryRepository.getCategories());
         categories.addAll(dailyTimePoolRepository.getCategories());
         List<String> uniqueCategories = new ArrayList<>(new java.util.HashSet<>(categories));
         sortItems(uniqueCategories, categorySortOrder, true);
@@ -540,6 +628,7 @@ public class ControlPanelManager
             updateNextReminder();
         }
         updateButtonVisibility();
+        updateTicker();
         notifyTimerStateChanged();
     }
 
@@ -621,6 +710,7 @@ public class ControlPanelManager
         tvCurrentDuration.setText(TimeUtils.formatDuration(0));
         tvStartDate.setText("-");
         updateButtonVisibility();
+        updateTicker();
     }
 
     private void updateButtonVisibility()
@@ -637,7 +727,7 @@ public class ControlPanelManager
         {
             return 0;
         }
-        return (new Date().getTime() - currentStartDatetime.getTime()) / MILLIS_PER_SECOND;
+        return (System.currentTimeMillis() - currentStartDatetime.getTime()) / MILLIS_PER_SECOND;
     }
 
     public long getTotalCurrentDurationSeconds()
@@ -665,73 +755,77 @@ public class ControlPanelManager
         return firstStartDatetime;
     }
 
+    /**
+     * Steady-state tick that only adds the live duration to the snapshot and formats into reused buffers.
+     */
     private void updateCurrentDuration()
     {
         long totalSeconds = getTotalCurrentDurationSeconds();
-        tvCurrentDuration.setText(TimeUtils.formatDuration(totalSeconds));
-        updateTotalDurations();
-        updatePoolTime();
-        if (nextReminderSeconds > 0 && reminderIntervalSeconds > 0 && totalSeconds >= nextReminderSeconds)
+        setDurationText(tvCurrentDuration, currentDurationBuffer, totalSeconds);
+        showTotalDurations(totalSeconds);
+        if (isPoolActive)
         {
-            int intervalsPassed = (int)(totalSeconds / reminderIntervalSeconds);
-            nextReminderSeconds = (intervalsPassed + 1) * reminderIntervalSeconds;
-            long delayMillis = (nextReminderSeconds - totalSeconds) * MILLIS_PER_SECOND;
-            if (delayMillis > 0)
+            if (System.currentTimeMillis() >= poolSnapshotExpiryMillis)
+            {
+                updatePoolTime();
+            }
+            else
             {
-                scheduleReminderAlarm(delayMillis);
+                showPoolTime(basePoolRemainingSeconds - totalSeconds);
             }
         }
     }
 
+    /**
+     * Rebuilds the tick snapshot after the selection, the entries or the pools changed.
+     */
+    public void refreshSnapshot()
+    {
+        updateTotalDurations();
+        updatePoolTime();
+    }
+
     public void updateTotalDurations()
     {
-        String project = spinnerProject.getText().toString();
-        String category = spinnerCategory.getText().toString();
-        long totalProject = timeEntryRepository.getTotalDurationForField(project, TimeEntry::getProject);
-        long totalCategory = timeEntryRepository.getTotalDurationForField(category, TimeEntry::getCategory);
-        if (isRunning)
-        {
-            totalProject += getTotalCurrentDurationSeconds();
-            totalCategory += getTotalCurrentDurationSeconds();
-        }
-        tvTotalProjectDuration.setText(TimeUtils.formatDuration(totalProject));
-        tvTotalCategoryDuration.setText(TimeUtils.formatDuration(totalCategory));
+        baseProjectSeconds = timeEntryRepository.getTotalDurationForProject(spinnerProject.getText().toString());
+        baseCategorySeconds = timeEntryRepository.getTotalDurationForCategory(spinnerCategory.getText().toString());
+        showTotalDurations(isRunning ? getTotalCurrentDurationSeconds() : 0);
     }
 
-    private String formatPoolTimeDisplay(long poolSeconds)
+    private void showTotalDurations(long liveSeconds)
     {
-        if (poolSeconds == 0)
-        {
-            return "-";
-        }
-        String timeStr = TimeUtils.formatDuration(Math.abs(poolSeconds));
-        return poolSeconds < 0 ? "-" + timeStr : timeStr;
+        setDurationText(tvTotalProjectDuration, projectDurationBuffer, baseProjectSeconds + liveSeconds);
+        setDurationText(tvTotalCategoryDuration, categoryDurationBuffer, baseCategorySeconds + liveSeconds);
     }
 
-    private void setPoolTimeDisplay(TextView textView, long poolSeconds)
+    private static void setDurationText(TextView textView, char[] buffer, long seconds)
+    {
+        textView.setText(buffer, 0, TimeUtils.formatDuration(seconds, buffer, 0));
+    }
+
+    private void showPoolTime(long poolSeconds)
     {
-        textView.setText(formatPoolTimeDisplay(poolSeconds));
         if (poolSeconds == 0)
         {
-            textView.setTextColor(tvStartDate.getCurrentTextColor());
-        }
-        else if (poolSeconds >= 0)
-        {
-            textView.setTextColor(context.getResources().getColor(R.color.pool_positive, null));
-        }
-        else
-        {
-            textView.setTextColor(context.getResources().getColor(R.color.pool_negative, null));
+            tvPoolTime.setText("-");
+            tvPoolTime.setTextColor(tvStartDate.getCurrentTextColor());
+            return;
         }
+        tvPoolTime.setText(poolTimeBuffer, 0, TimeUtils.formatDuration(poolSeconds, poolTimeBuffer, 0));
+        tvPoolTime.setTextColor(poolSeconds > 0 ? poolPositiveColor : poolNegativeColor);
     }
 
+    /**
+     * Recomputes the pool snapshot, which stays valid until the pool period or day count rolls over.
+     */
     public void updatePoolTime()
     {
         String category = spinnerCategory.getText().toString();
         int dailyMinutes = dailyTimePoolRepository.getDailyMinutes(category);
-        if (dailyMinutes <= 0)
+        isPoolActive = dailyMinutes > 0;
+        if (!isPoolActive)
         {
-            setPoolTimeDisplay(tvPoolTime, 0);
+            showPoolTime(0);
             return;
         }
         TimePoolsManager.PoolResetInterval interval = poolsManager != null ? poolsManager.getPoolResetInterval() : TimePoolsManager.PoolResetInterval.NEVER;
@@ -743,6 +837,7 @@ public class ControlPanelManager
         {
             poolSeconds = period.poolSeconds;
             usedSeconds = timeEntryRepository.getTotalDurationForCategoryInRange(category, period.periodStart, period.periodEnd);
+            poolSnapshotExpiryMillis = period.periodEnd.getTime();
         }
         else
         {
@@ -753,37 +848,38 @@ public class ControlPanelManager
             }
             int days = TimeUtils.daysBetween(earliestDate, new Date());
             poolSeconds = (long)dailyMinutes * SECONDS_PER_MINUTE * days;
-            usedSeconds = timeEntryRepository.getTotalDurationForField(category, TimeEntry::getCategory);
+            usedSeconds = timeEntryRepository.getTotalDurationForCategory(category);
+            poolSnapshotExpiryMillis = earliestDate.getTime() + TimeUnit.DAYS.toMillis(days);  // The day count grows once another full day passed since the earliest start
         }
 
-        if (isRunning && category.equals(spinnerCategory.getText().toString()))
-        {
-            usedSeconds += getTotalCurrentDurationSeconds();
-        }
-        long remainingSeconds = poolSeconds - usedSeconds;
-        setPoolTimeDisplay(tvPoolTime, remainingSeconds);
+        basePoolRemainingSeconds = poolSeconds - usedSeconds;
+        showPoolTime(basePoolRemainingSeconds - (isRunning ? getTotalCurrentDurationSeconds() : 0));
     }
 
     private void updateNextReminder()
     {
         cancelReminderAlarm();
+        nextReminderSeconds = 0;
         if (reminderIntervalSeconds > 0 && isRunning && !isPaused)
         {
-            long currentSeconds = getTotalCurrentDurationSeconds();
-            int intervalsPassed = (int)(currentSeconds / reminderIntervalSeconds);
-            nextReminderSeconds = (intervalsPassed + 1) * reminderIntervalSeconds;
-            long delayMillis = (nextReminderSeconds - currentSeconds) * MILLIS_PER_SECOND;
-            if (delayMillis > 0)
-            {
-                scheduleReminderAlarm(delayMillis);
-            }
-        }
-        else
-        {
-            nextReminderSeconds = 0;
+            scheduleNextReminder();
         }
     }
 
+    /**
+     * Schedules the alarm for the next reminder and a callback to chain the one after, independent of the ticker.
+     */
+    private void scheduleNextReminder()
+    {
+        long currentSeconds = getTotalCurrentDurationSeconds();
+        long reachedSeconds = Math.max(currentSeconds, nextReminderSeconds);
+        int intervalsPassed = (int)(reachedSeconds / reminderIntervalSeconds);
+        nextReminderSeconds = (intervalsPassed + 1) * reminderIntervalSeconds;
+        long delayMillis = (nextReminderSeconds - currentSeconds) * MILLIS_PER_SECOND;
+        scheduleReminderAlarm(delayMillis);
+        handler.postDelayed(reminderRunnable, delayMillis);
+    }
+
     private void scheduleReminderAlarm(long delayMillis)
     {
         if (alarmManager == null || reminderIntervalSeconds <= 0)
@@ -815,6 +911,7 @@ public class ControlPanelManager
 
     private void cancelReminderAlarm()
     {
+        handler.removeCallbacks(reminderRunnable);
         if (alarmManager == null)
         {
             return;
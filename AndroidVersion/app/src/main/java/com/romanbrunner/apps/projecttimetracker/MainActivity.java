@@ -23,6 +23,7 @@ import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.textfield.MaterialAutoCompleteTextView;
 import com.romanbrunner.apps.projecttimetracker.data.DailyTimePoolRepository;
 import com.romanbrunner.apps.projecttimetracker.data.TimeEntryRepository;
+import com.romanbrunner.apps.projecttimetracker.util.EpochDays;
 import com.romanbrunner.apps.projecttimetracker.util.PreferencesManager;
 
 /**
@@ -75,12 +76,33 @@ public class MainActivity extends AppCompatActivity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         initializeFilePickers();
-        timeEntryRepository = new TimeEntryRepository(this);
+        timeEntryRepository = TimeEntryRepository.getInstance(this);
         dailyTimePoolRepository = new DailyTimePoolRepository(this);
         preferencesManager = new PreferencesManager(this);
         alarmManager = (AlarmManager)getSystemService(Context.ALARM_SERVICE);
         initializeViews();
         initializeManagers();
+        timeEntryRepository.loadAsync(() -> runOnUiThread(this::onEntriesLoaded));
+    }
+
+    /**
+     * Populates the sections that depend on the full entry history once it is loaded.
+     */
+    private void onEntriesLoaded()
+    {
+        if (isDestroyed())
+        {
+            return;
+        }
+        controlPanelManager.updateSpinnerData();
+        controlPanelManager.restoreSavedSelection();
+        controlPanelManager.refreshSnapshot();
+        entriesManager.refreshEntryList();
+        poolsManager.refreshPoolsData();
+        if (selectedSectionIndex == 3)
+        {
+            chartManager.loadChartData(true);
+        }
     }
 
     @Override
@@ -88,12 +110,18 @@ public class MainActivity extends AppCompatActivity
     {
         super.onDestroy();
         controlPanelManager.onDestroy();
+        entriesManager.onDestroy();
+        chartManager.onDestroy();
     }
 
     @Override
     protected void onResume()
     {
         super.onResume();
+        if (EpochDays.refreshTimeZone())
+        {
+            timeEntryRepository.onTimeZoneChanged();
+        }
         controlPanelManager.onResume();
     }
 
@@ -102,6 +130,7 @@ public class MainActivity extends AppCompatActivity
     {
         super.onPause();
         controlPanelManager.onPause();
+        poolsManager.onPause();
     }
 
     private void initializeViews()
@@ -166,16 +195,25 @@ public class MainActivity extends AppCompatActivity
         entriesManager = new TimeEntriesManager(
             this,
             findViewById(R.id.rv_entries),
+            btnLoadEntries,
             timeEntryRepository
         );
         entriesManager.setOnEntriesChangedListener(() ->
         {
             controlPanelManager.updateSpinnerData();
-            controlPanelManager.updateTotalDurations();
-            controlPanelManager.updatePoolTime();
+            controlPanelManager.refreshSnapshot();
+        });
+        btnLoadEntries.setOnClickListener(v ->
+        {
+            if (entriesManager.isImporting())
+            {
+                entriesManager.cancelImport();
+            }
+            else
+            {
+                loadEntriesFileLauncher.launch(new String[]{"text/plain"});
+            }
         });
-        entriesManager.setupRecyclerView();
-        btnLoadEntries.setOnClickListener(v -> loadEntriesFileLauncher.launch(new String[]{"text/plain"}));
         btnSaveEntries.setOnClickListener(v -> saveEntriesFileLauncher.launch("MetaDataProjectTime.txt"));
         // Pools Manager:
         RecyclerView rvPoolsMain = findViewById(R.id.rv_pools_main);
@@ -183,6 +221,11 @@ public class MainActivity extends AppCompatActivity
         poolsManager = new TimePoolsManager(this, rvPoolsMain, dailyTimePoolRepository, timeEntryRepository, preferencesManager, tvPoolResetInterval);
         poolsManager.setupRecyclerView();
         controlPanelManager.setPoolsManager(poolsManager);
+        poolsManager.setOnPoolsChangedListener(() ->
+        {
+            controlPanelManager.updateSpinnerData();
+            controlPanelManager.refreshSnapshot();
+        });
         btnLoadPoolsMain.setOnClickListener(v -> loadPoolsFileLauncher.launch(new String[]{"text/plain"}));
         btnSavePoolsMain.setOnClickListener(v -> savePoolsFileLauncher.launch("MetaDataDailyTimePools.txt"));
         btnRemoveCategoryMain.setOnClickListener(v -> poolsManager.showRemoveCategoryDialog());
@@ -246,9 +289,15 @@ public class MainActivity extends AppCompatActivity
         selectedSectionIndex = index;
         sectionSelectorAdapter.notifyDataSetChanged();
         cardControlPanel.setVisibility(index == 0 ? View.VISIBLE : View.GONE);
+        controlPanelManager.setVisible(index == 0);
         cardEntries.setVisibility(index == 1 ? View.VISIBLE : View.GONE);
         cardPools.setVisibility(index == 2 ? View.VISIBLE : View.GONE);
         cardOverview.setVisibility(index == 3 ? View.VISIBLE : View.GONE);
+        if (index == 1)
+        {
+            entriesManager.setupRecyclerView();
+            entriesManager.refreshEntryList();  // Picks up categories renamed from the pools section
+        }
         if (index == 2)
         {
             poolsManager.refreshPoolsData();
@@ -1,19 +1,26 @@
 package com.romanbrunner.apps.projecttimetracker;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.textfield.TextInputEditText;
 import com.romanbrunner.apps.projecttimetracker.data.TimeEntryRepository;
 import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
 import com.romanbrunner.apps.projecttimetracker.util.TimeUtils;
@@ -22,7 +29,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Future;
 
 /**
  * Manager class for time entries functionality.
@@ -37,16 +49,47 @@ public class TimeEntriesManager
         void onEntriesChanged();
     }
 
+    // Constants:
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_MARGIN = 10;  // Rows before a page boundary at which the neighbouring page is loaded
+    private static final int MAX_CACHED_PAGES = 4;  // Enough for the visible window spanning two pages plus one prefetched page each way
+    private static final float CACHE_LOAD_FACTOR = 0.75f;
+    private static final long UNKNOWN_FILE_SIZE = -1;
+    private static final int PERCENT = 100;
+
+    // Entries are identified by id and compared by their displayed fields:
+    private static final DiffUtil.ItemCallback<TimeEntry> DIFF_CALLBACK = new DiffUtil.ItemCallback<TimeEntry>()
+    {
+        @Override
+        public boolean areItemsTheSame(@NonNull TimeEntry oldEntry, @NonNull TimeEntry newEntry)
+        {
+            return Objects.equals(oldEntry.getId(), newEntry.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TimeEntry oldEntry, @NonNull TimeEntry newEntry)
+        {
+            return Objects.equals(oldEntry.getProject(), newEntry.getProject())
+                    && Objects.equals(oldEntry.getCategory(), newEntry.getCategory())
+                    && oldEntry.getDurationSeconds() == newEntry.getDurationSeconds()
+                    && Objects.equals(oldEntry.getStartTime(), newEntry.getStartTime());
+        }
+    };
+
     private final Context context;
     private final RecyclerView rvEntries;
+    private final Button btnLoadEntries;
     private final TimeEntryRepository timeEntryRepository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private TimeEntryAdapter adapter;
     private OnEntriesChangedListener listener;
+    private Future<?> pendingImport;  // Running file import, null if there is none
 
-    public TimeEntriesManager(Context context, RecyclerView rvEntries, TimeEntryRepository timeEntryRepository)
+    public TimeEntriesManager(Context context, RecyclerView rvEntries, Button btnLoadEntries, TimeEntryRepository timeEntryRepository)
     {
         this.context = context;
         this.rvEntries = rvEntries;
+        this.btnLoadEntries = btnLoadEntries;
         this.timeEntryRepository = timeEntryRepository;
     }
 
@@ -55,9 +98,16 @@ public class TimeEntriesManager
         this.listener = listener;
     }
 
+    /**
+     * Builds the entry list on first use, so it is only created once the entries section is opened.
+     */
     public void setupRecyclerView()
     {
-        adapter = new TimeEntryAdapter(timeEntryRepository.getAllEntries());
+        if (adapter != null)
+        {
+            return;
+        }
+        adapter = new TimeEntryAdapter();
         rvEntries.setLayoutManager(new LinearLayoutManager(context));
         rvEntries.setAdapter(adapter);
     }
@@ -66,22 +116,77 @@ public class TimeEntriesManager
     {
         if (adapter != null)
         {
-            adapter.updateEntries(timeEntryRepository.getAllEntries());
+            adapter.refresh();
         }
     }
 
+    /**
+     * Asks whether the file is merged into the current entries or replaces them, then imports it.
+     */
     public void loadEntriesFromFile(Uri uri)
     {
+        if (isImporting())
+        {
+            return;
+        }
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.load_mode_title)
+                .setMessage(R.string.load_mode_message)
+                .setPositiveButton(R.string.merge, (dialog, which) -> startImport(uri, TimeEntryRepository.ImportMode.MERGE))
+                .setNeutralButton(R.string.replace, (dialog, which) -> startImport(uri, TimeEntryRepository.ImportMode.REPLACE))
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Starts importing the file in the background, showing the progress on the load button which cancels the import while it runs.
+     */
+    private void startImport(Uri uri, TimeEntryRepository.ImportMode mode)
+    {
+        if (isImporting())
+        {
+            return;
+        }
         try
         {
             InputStream inputStream = context.getContentResolver().openInputStream(uri);
             if (inputStream != null)
             {
-                timeEntryRepository.importFromTextFile(inputStream);
-                inputStream.close();
-                refreshEntryList();
-                notifyEntriesChanged();
-                Toast.makeText(context, "Entries loaded successfully", Toast.LENGTH_SHORT).show();
+                long fileSize = queryFileSize(uri);
+                btnLoadEntries.setText(getImportProgressText(0, fileSize));
+                pendingImport = timeEntryRepository.importFromTextFileAsync(inputStream, mode, new TimeEntryRepository.ImportListener()
+                {
+                    @Override
+                    public void onProgress(long bytesRead)
+                    {
+                        mainHandler.post(() -> { if (isImporting()) btnLoadEntries.setText(getImportProgressText(bytesRead, fileSize)); });
+                    }
+
+                    @Override
+                    public void onImported(int importedCount)
+                    {
+                        mainHandler.post(() ->
+                        {
+                            finishImport();
+                            refreshEntryList();
+                            notifyEntriesChanged();
+                            int messageRes = mode == TimeEntryRepository.ImportMode.MERGE ? R.plurals.entries_merged : R.plurals.entries_loaded;
+                            String message = context.getResources().getQuantityString(messageRes, importedCount, importedCount);
+                            Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
+                        });
+                    }
+
+                    @Override
+                    public void onImportFailed(Exception exception)
+                    {
+                        exception.printStackTrace();
+                        mainHandler.post(() ->
+                        {
+                            finishImport();
+                            Toast.makeText(context, "Error loading file: " + exception.getMessage(), Toast.LENGTH_LONG).show();
+                        });
+                    }
+                });
             }
         }
         catch (Exception e)
@@ -91,6 +196,62 @@ public class TimeEntriesManager
         }
     }
 
+    public boolean isImporting()
+    {
+        return pendingImport != null;
+    }
+
+    /**
+     * Stops a running import, keeping the current entries.
+     */
+    public void cancelImport()
+    {
+        if (pendingImport != null)
+        {
+            pendingImport.cancel(true);
+            finishImport();
+            Toast.makeText(context, R.string.loading_cancelled, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    public void onDestroy()
+    {
+        if (pendingImport != null)
+        {
+            pendingImport.cancel(true);
+        }
+    }
+
+    private void finishImport()
+    {
+        pendingImport = null;
+        btnLoadEntries.setText(R.string.load);
+    }
+
+    private String getImportProgressText(long bytesRead, long fileSize)
+    {
+        if (fileSize <= 0)
+        {
+            return context.getString(R.string.cancel);
+        }
+        return context.getString(R.string.cancel_with_progress, Math.min(PERCENT, bytesRead * PERCENT / fileSize));
+    }
+
+    /**
+     * Returns the size of the document in bytes, or UNKNOWN_FILE_SIZE if the provider does not report it.
+     */
+    private long queryFileSize(Uri uri)
+    {
+        try (Cursor cursor = context.getContentResolver().query(uri, new String[]{OpenableColumns.SIZE}, null, null, null))
+        {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0))
+            {
+                return cursor.getLong(0);
+            }
+        }
+        return UNKNOWN_FILE_SIZE;
+    }
+
     public void saveEntriesToFile(Uri uri)
     {
         try
@@ -110,6 +271,32 @@ public class TimeEntriesManager
         }
     }
 
+    /**
+     * Renames a project in all entries, merging into an existing project of the same name.
+     */
+    private void showRenameProjectDialog(String project)
+    {
+        View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_rename, null);
+        TextInputEditText etNewName = dialogView.findViewById(R.id.et_new_name);
+        etNewName.setText(project);
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.rename_project)
+                .setMessage(R.string.rename_message)
+                .setView(dialogView)
+                .setPositiveButton(R.string.rename, (dialog, which) ->
+                {
+                    String newProject = etNewName.getText() != null ? etNewName.getText().toString().trim() : "";
+                    if (!newProject.isEmpty() && !newProject.equals(project))
+                    {
+                        timeEntryRepository.renameProjects(Collections.singletonMap(project, newProject));
+                        refreshEntryList();
+                        notifyEntriesChanged();
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
     private void notifyEntriesChanged()
     {
         if (listener != null)
@@ -118,22 +305,167 @@ public class TimeEntriesManager
         }
     }
 
+    /**
+     * Derives a 64-bit item id from an entry id, folding the bits of canonical UUIDs.
+     */
+    private static long toStableId(String entryId)
+    {
+        try
+        {
+            UUID uuid = UUID.fromString(entryId);
+            return uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return entryId.hashCode();
+        }
+    }
+
+    /**
+     * Newest-first entry list that materializes fixed-size pages from the repository on demand and keeps only a few of them.
+     */
     private class TimeEntryAdapter extends RecyclerView.Adapter<TimeEntryAdapter.ViewHolder>
     {
-        private List<TimeEntry> entries;
+        private final Map<Integer, List<TimeEntry>> pages = new LinkedHashMap<Integer, List<TimeEntry>>(MAX_CACHED_PAGES, CACHE_LOAD_FACTOR, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<TimeEntry>> eldest)
+            {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+        private int itemCount;
+        private String newestEntryId;
 
-        TimeEntryAdapter(List<TimeEntry> entries)
+        TimeEntryAdapter()
         {
-            this.entries = new ArrayList<>(entries);
-            // Reverse to show newest first:
-            Collections.reverse(this.entries);
+            setHasStableIds(true);
+            reload();
         }
 
-        void updateEntries(List<TimeEntry> newEntries)
+        private void reload()
         {
-            this.entries = new ArrayList<>(newEntries);
-            Collections.reverse(this.entries);
-            notifyDataSetChanged();
+            pages.clear();
+            itemCount = timeEntryRepository.getEntryCount();
+            newestEntryId = itemCount > 0 ? getItem(0).getId() : null;
+        }
+
+        /**
+         * Reloads the list, announcing entries added at the newest end as inserts, edited rows as item changes and anything else as a change of the shown rows.
+         */
+        void refresh()
+        {
+            int previousCount = itemCount;
+            String previousNewestId = newestEntryId;
+            Map<Integer, List<TimeEntry>> previousPages = new LinkedHashMap<>(pages);
+            reload();
+            int addedCount = itemCount - previousCount;
+            boolean isPrepended = addedCount > 0 && (previousCount == 0 || previousNewestId.equals(getItem(addedCount).getId()));
+            List<Integer> changedPositions = isPrepended || addedCount == 0 ? findChangedRows(previousPages, Math.max(addedCount, 0)) : null;
+            if (changedPositions == null)
+            {
+                notifyDataSetChanged();
+                return;
+            }
+            if (addedCount > 0)
+            {
+                notifyItemRangeInserted(0, addedCount);
+            }
+            changedPositions.forEach(this::notifyItemChanged);
+        }
+
+        /**
+         * Diffs the previously cached pages against the repository with the item callback, expecting every cached row to have moved down by the shift.
+         * Returns the new positions of the edited rows, or null if any cached row is no longer found there, since rows can then no longer be matched by position.
+         * The cached window holds at most a few pages, so the diff stays cheap enough for the main thread.
+         */
+        private List<Integer> findChangedRows(Map<Integer, List<TimeEntry>> previousPages, int shift)
+        {
+            List<Integer> changedPositions = new ArrayList<>();
+            for (Map.Entry<Integer, List<TimeEntry>> previousPage : previousPages.entrySet())
+            {
+                int firstPosition = previousPage.getKey() * PAGE_SIZE + shift;
+                List<TimeEntry> oldEntries = previousPage.getValue();
+                for (int offset = 0; offset < oldEntries.size(); offset++)
+                {
+                    TimeEntry newEntry = getItem(firstPosition + offset);
+                    if (newEntry == null || !DIFF_CALLBACK.areItemsTheSame(oldEntries.get(offset), newEntry))
+                    {
+                        return null;
+                    }
+                    if (!DIFF_CALLBACK.areContentsTheSame(oldEntries.get(offset), newEntry))
+                    {
+                        changedPositions.add(firstPosition + offset);
+                    }
+                }
+            }
+            return changedPositions;
+        }
+
+        void removeEntry(TimeEntry entry, int position)
+        {
+            int previousCount = itemCount;
+            timeEntryRepository.removeEntry(entry.getId());
+            reload();
+            if (itemCount == previousCount - 1 && position != RecyclerView.NO_POSITION)
+            {
+                notifyItemRemoved(position);
+            }
+            else
+            {
+                notifyDataSetChanged();
+            }
+        }
+
+        /**
+         * Returns the entry at the position, loading its page if needed, or null if the repository changed since the last reload.
+         */
+        private TimeEntry getItem(int position)
+        {
+            int pageIndex = position / PAGE_SIZE;
+            List<TimeEntry> page = pages.get(pageIndex);
+            if (page == null)
+            {
+                page = timeEntryRepository.getEntriesNewestFirst(pageIndex * PAGE_SIZE, PAGE_SIZE);
+                pages.put(pageIndex, page);
+            }
+            int offset = position % PAGE_SIZE;
+            return offset < page.size() ? page.get(offset) : null;
+        }
+
+        private void prefetchNeighbourPage(int position)
+        {
+            int offset = position % PAGE_SIZE;
+            int neighbourPosition;
+            if (offset < PREFETCH_MARGIN)
+            {
+                neighbourPosition = position - offset - 1;  // Last row of the previous page
+            }
+            else if (offset >= PAGE_SIZE - PREFETCH_MARGIN)
+            {
+                neighbourPosition = position - offset + PAGE_SIZE;  // First row of the next page
+            }
+            else
+            {
+                return;
+            }
+            if (neighbourPosition >= 0 && neighbourPosition < itemCount)
+            {
+                getItem(neighbourPosition);
+            }
+        }
+
+        @Override
+        public int getItemCount()
+        {
+            return itemCount;
+        }
+
+        @Override
+        public long getItemId(int position)
+        {
+            TimeEntry entry = getItem(position);
+            return entry != null ? toStableId(entry.getId()) : RecyclerView.NO_ID;
         }
 
         @NonNull
@@ -147,8 +479,18 @@ public class TimeEntriesManager
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position)
         {
-            TimeEntry entry = entries.get(position);
+            TimeEntry entry = getItem(position);
+            if (entry == null)
+            {
+                return;
+            }
+            prefetchNeighbourPage(position);
             holder.tvProject.setText(entry.getProject());
+            holder.tvProject.setOnLongClickListener(v ->
+            {
+                showRenameProjectDialog(entry.getProject());
+                return true;
+            });
             holder.tvCategory.setText(entry.getCategory());
             holder.tvDuration.setText(TimeUtils.formatDuration(entry.getDurationSeconds()));
             holder.tvStartTime.setText(TimeUtils.formatDateTimeForDisplay(entry.getStartTime()));
@@ -159,10 +501,7 @@ public class TimeEntriesManager
                         .setMessage(R.string.confirm_delete_message)
                         .setPositiveButton(R.string.delete, (dialog, which) ->
                         {
-                            // Find actual index in repository (entries are reversed):
-                            int actualIndex = timeEntryRepository.getEntryCount() - 1 - position;
-                            timeEntryRepository.removeEntry(actualIndex);
-                            refreshEntryList();
+                            removeEntry(entry, holder.getBindingAdapterPosition());
                             notifyEntriesChanged();
                         })
                         .setNegativeButton(R.string.cancel, null)
@@ -170,12 +509,6 @@ public class TimeEntriesManager
             });
         }
 
-        @Override
-        public int getItemCount()
-        {
-            return entries.size();
-        }
-
         class ViewHolder extends RecyclerView.ViewHolder
         {
             TextView tvProject, tvCategory, tvDuration, tvStartTime;
@@ -2,6 +2,8 @@ package com.romanbrunner.apps.projecttimetracker;
 
 import android.content.Context;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.ImageButton;
 import android.widget.PopupMenu;
 import android.widget.TextView;
@@ -14,20 +16,19 @@ import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.romanbrunner.apps.projecttimetracker.data.TimeEntryRepository;
-import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
-import com.romanbrunner.apps.projecttimetracker.util.TimeUtils;
+import com.romanbrunner.apps.projecttimetracker.util.EpochDays;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Manager class for time overview logic.
@@ -45,7 +46,8 @@ public class TimeOverviewManager
     private static final int WEEK_MAX_INDEX = 6;
     private static final int YEAR_LABEL_SKIP = 2;
     private static final int FULL_LABEL_SKIP = 3;
-    private static final int MAX_PERIOD_SEARCH = 52;
+    private static final int CHART_CACHE_CAPACITY = 24;
+    private static final float CACHE_LOAD_FACTOR = 0.75f;
 
     public enum TimeRangeMode
     {
@@ -58,8 +60,55 @@ public class TimeOverviewManager
     private final ImageButton btnTimePrev;
     private final ImageButton btnTimeNext;
     private final TextView tvTimeRangeLabel;
+    private final ExecutorService chartExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TimeEntryRepository.OnDataChangedListener dataChangedListener = this::invalidateChartCache;  // Kept to unregister from the shared repository
     private TimeRangeMode timeRangeMode = TimeRangeMode.WEEK;
     private int currentTimeOffset = 0;
+    private volatile int latestChartRequestId = 0;
+    private int chartCacheGeneration = 0;  // Guarded by chartCache, bumped whenever entries or the current day change
+    private long chartCacheDay = EpochDays.today();  // Guarded by chartCache, the day the cached offsets count from
+    private final Map<String, ChartData> chartCache = new LinkedHashMap<String, ChartData>(CHART_CACHE_CAPACITY, CACHE_LOAD_FACTOR, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChartData> eldest)
+        {
+            return size() > CHART_CACHE_CAPACITY;
+        }
+    };
+    private Future<?> pendingChartTask = null;
+
+    /**
+     * Chart content computed off the main thread for one time range mode and offset.
+     */
+    private static class ChartData
+    {
+        final TimeRangeMode mode;
+        final int offset;
+        final String rangeLabel;  // Null if there are no entries to show
+        final Date rangeStart;
+        final Date rangeEnd;
+        final String xAxisFormat;
+        final long[] bucketStartDays;  // Local epoch day at which each x-axis bucket starts, followed by the exclusive end day
+        final List<LineDataSet> dataSets;
+
+        ChartData(TimeRangeMode mode, int offset, String rangeLabel, Date rangeStart, Date rangeEnd, String xAxisFormat, long[] bucketStartDays, List<LineDataSet> dataSets)
+        {
+            this.mode = mode;
+            this.offset = offset;
+            this.rangeLabel = rangeLabel;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.xAxisFormat = xAxisFormat;
+            this.bucketStartDays = bucketStartDays;
+            this.dataSets = dataSets;
+        }
+
+        boolean isEmptyPeriod()
+        {
+            return rangeLabel != null && dataSets.isEmpty();
+        }
+    }
 
     public TimeOverviewManager(Context context, LineChart chart, TimeEntryRepository timeEntryRepository, ImageButton btnTimePrev, ImageButton btnTimeNext, TextView tvTimeRangeLabel)
     {
@@ -69,6 +118,7 @@ public class TimeOverviewManager
         this.btnTimePrev = btnTimePrev;
         this.btnTimeNext = btnTimeNext;
         this.tvTimeRangeLabel = tvTimeRangeLabel;
+        timeEntryRepository.addOnDataChangedListener(dataChangedListener);
     }
 
     public void setupChart()
@@ -138,179 +188,204 @@ public class TimeOverviewManager
         loadChartData(false);
     }
 
+    /**
+     * Shows cached chart data immediately or computes it in the background, cancelling any pending computation and dropping stale results.
+     */
     public void loadChartData(boolean autoNavigateToData)
     {
-        List<TimeEntry> allEntries = timeEntryRepository.getAllEntries();
-        if (allEntries.isEmpty())
+        final int requestId = ++latestChartRequestId;
+        final TimeRangeMode mode = timeRangeMode;
+        final int offset = currentTimeOffset;
+        if (pendingChartTask != null)
         {
-            chart.clear();
-            chart.invalidate();
-            tvTimeRangeLabel.setText("");
+            pendingChartTask.cancel(true);
+        }
+        ChartData cachedData = getCachedChartData(mode, offset);
+        if (cachedData != null && !(autoNavigateToData && cachedData.isEmptyPeriod()))
+        {
+            applyChartData(cachedData);
+            prefetchAdjacentPeriods(requestId, mode, offset);
             return;
         }
-        Set<String> categories = new HashSet<>();
-        for (TimeEntry entry : allEntries)
+        pendingChartTask = chartExecutor.submit(() ->
+        {
+            ChartData chartData = computeChartData(mode, offset, autoNavigateToData);
+            if (chartData != null)
+            {
+                mainHandler.post(() -> { if (requestId == latestChartRequestId) applyChartData(chartData); });
+                prefetchAdjacentPeriods(requestId, mode, chartData.offset);
+            }
+        });
+    }
+
+    public void onDestroy()
+    {
+        timeEntryRepository.removeOnDataChangedListener(dataChangedListener);
+        chartExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs on the chart executor and returns null if the computation was cancelled.
+     */
+    private ChartData computeChartData(TimeRangeMode mode, int offset, boolean autoNavigateToData)
+    {
+        ChartData chartData = getOrBuildChartData(mode, offset);
+        // Auto-navigate to nearest period with data if requested and current period is empty:
+        if (chartData != null && chartData.isEmptyPeriod() && autoNavigateToData && mode != TimeRangeMode.FULL)
         {
-            categories.add(entry.getCategory());
+            // Prefer the most recent past period, otherwise the closest future one:
+            Date dataStart = timeEntryRepository.findPreviousEntryStart(getPeriodStart(mode, 0));
+            if (dataStart == null)
+            {
+                dataStart = timeEntryRepository.findNextEntryStart(getPeriodStart(mode, 1));
+            }
+            if (dataStart != null)
+            {
+                chartData = getOrBuildChartData(mode, getPeriodOffset(mode, dataStart));
+            }
+        }
+        return chartData;
+    }
+
+    /**
+     * Warms the cache with the periods that previous and next navigation would jump to.
+     */
+    private void prefetchAdjacentPeriods(int requestId, TimeRangeMode mode, int offset)
+    {
+        if (mode == TimeRangeMode.FULL || chartExecutor.isShutdown())
+        {
+            return;
+        }
+        chartExecutor.execute(() ->
+        {
+            prefetchPeriod(requestId, mode, timeEntryRepository.findPreviousEntryStart(getPeriodStart(mode, offset)));
+            prefetchPeriod(requestId, mode, timeEntryRepository.findNextEntryStart(getPeriodStart(mode, offset + 1)));
+        });
+    }
+
+    private void prefetchPeriod(int requestId, TimeRangeMode mode, Date periodDate)
+    {
+        // Skip if a newer request superseded this prefetch:
+        if (periodDate != null && requestId == latestChartRequestId)
+        {
+            getOrBuildChartData(mode, getPeriodOffset(mode, periodDate));
         }
-        Calendar calendar = Calendar.getInstance();
+    }
+
+    private ChartData getCachedChartData(TimeRangeMode mode, int offset)
+    {
+        synchronized (chartCache)
+        {
+            return lookUpChartData(mode, offset);
+        }
+    }
+
+    /**
+     * Returns cached chart data or builds and caches it unless the data changed meanwhile.
+     */
+    private ChartData getOrBuildChartData(TimeRangeMode mode, int offset)
+    {
+        int generation;
+        synchronized (chartCache)
+        {
+            ChartData cachedData = lookUpChartData(mode, offset);
+            if (cachedData != null)
+            {
+                return cachedData;
+            }
+            generation = chartCacheGeneration;
+        }
+        ChartData chartData = buildChartData(mode, offset);
+        synchronized (chartCache)
+        {
+            if (chartData != null && generation == chartCacheGeneration)
+            {
+                chartCache.put(getChartCacheKey(mode, offset), chartData);
+            }
+        }
+        return chartData;
+    }
+
+    /**
+     * Looks up cached chart data while holding the chartCache lock, first dropping all of it once the day changed, since offsets count from the current period.
+     */
+    private ChartData lookUpChartData(TimeRangeMode mode, int offset)
+    {
+        long today = EpochDays.today();
+        if (today != chartCacheDay)
+        {
+            chartCache.clear();
+            chartCacheGeneration++;  // Charts still being built for the previous day are not cached
+            chartCacheDay = today;
+        }
+        return chartCache.get(getChartCacheKey(mode, offset));
+    }
+
+    private void invalidateChartCache()
+    {
+        synchronized (chartCache)
+        {
+            chartCache.clear();
+            chartCacheGeneration++;
+        }
+    }
+
+    private static String getChartCacheKey(TimeRangeMode mode, int offset)
+    {
+        return mode.name() + offset;
+    }
+
+    private ChartData buildChartData(TimeRangeMode mode, int offset)
+    {
+        if (timeEntryRepository.getEntryCount() == 0)
+        {
+            return new ChartData(mode, offset, null, null, null, null, null, new ArrayList<>());
+        }
+        Set<String> categories = timeEntryRepository.getTimedCategories();
         Date rangeStart;
         Date rangeEnd;
         String xAxisFormat;
         String rangeLabel;
-        switch (timeRangeMode)
+        switch (mode)
         {
             case WEEK:
-                int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-                int daysFromMonday = (dayOfWeek - Calendar.MONDAY + 7) % 7;
-                calendar.add(Calendar.DAY_OF_YEAR, -daysFromMonday);
-                calendar.add(Calendar.WEEK_OF_YEAR, currentTimeOffset);
-                rangeStart = getDayStart(calendar.getTime());
-                calendar.add(Calendar.DAY_OF_YEAR, 6);
-                rangeEnd = getDayEnd(calendar.getTime());
+                rangeStart = getPeriodStart(mode, offset);
+                rangeEnd = new Date(getPeriodStart(mode, offset + 1).getTime() - 1);
                 xAxisFormat = "EEE";
                 SimpleDateFormat weekFormat = new SimpleDateFormat("MMM dd", Locale.getDefault());
-                Calendar labelCalendar = Calendar.getInstance();
-                labelCalendar.setTime(rangeStart);
-                String weekStart = weekFormat.format(labelCalendar.getTime());
-                labelCalendar.add(Calendar.DAY_OF_YEAR, 6);
-                String weekEnd = weekFormat.format(labelCalendar.getTime());
-                rangeLabel = "Week: " + weekStart + " - " + weekEnd;
+                rangeLabel = "Week: " + weekFormat.format(rangeStart) + " - " + weekFormat.format(rangeEnd);
                 break;
             case MONTH:
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.add(Calendar.MONTH, currentTimeOffset);
-                rangeStart = getDayStart(calendar.getTime());
-                calendar.add(Calendar.MONTH, 1);
-                calendar.add(Calendar.DAY_OF_MONTH, -1);
-                rangeEnd = getDayEnd(calendar.getTime());
+                rangeStart = getPeriodStart(mode, offset);
+                rangeEnd = new Date(getPeriodStart(mode, offset + 1).getTime() - 1);
                 xAxisFormat = "d";
                 SimpleDateFormat monthFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
                 rangeLabel = "Month: " + monthFormat.format(rangeStart);
                 break;
             case YEAR:
-                calendar.set(Calendar.DAY_OF_YEAR, 1);
-                calendar.add(Calendar.YEAR, currentTimeOffset);
-                rangeStart = getDayStart(calendar.getTime());
-                calendar.add(Calendar.YEAR, 1);
-                calendar.add(Calendar.DAY_OF_YEAR, -1);
-                rangeEnd = getDayEnd(calendar.getTime());
+                rangeStart = getPeriodStart(mode, offset);
+                rangeEnd = new Date(getPeriodStart(mode, offset + 1).getTime() - 1);
                 xAxisFormat = "MMM";
                 SimpleDateFormat yearFormat = new SimpleDateFormat("yyyy", Locale.getDefault());
                 rangeLabel = "Year: " + yearFormat.format(rangeStart);
                 break;
             case FULL:
             default:
-                Date earliestDate = null;
-                Date latestDate = null;
-                for (TimeEntry entry : allEntries)
-                {
-                    if (entry.getStartTime() != null)
-                    {
-                        if (earliestDate == null || entry.getStartTime().before(earliestDate))
-                        {
-                            earliestDate = entry.getStartTime();
-                        }
-                        if (latestDate == null || entry.getStartTime().after(latestDate))
-                        {
-                            latestDate = entry.getStartTime();
-                        }
-                    }
-                }
+                Date earliestDate = timeEntryRepository.getEarliestStartDate();
+                Date latestDate = timeEntryRepository.getLatestStartDate();
                 if (earliestDate == null || latestDate == null)
                 {
-                    chart.clear();
-                    chart.invalidate();
-                    return;
+                    return new ChartData(mode, offset, null, null, null, null, null, new ArrayList<>());
                 }
-                rangeStart = getDayStart(earliestDate);
-                rangeEnd = getDayEnd(latestDate);
+                rangeStart = new Date(EpochDays.toMillis(EpochDays.fromMillis(earliestDate.getTime())));
+                rangeEnd = new Date(EpochDays.toMillis(EpochDays.fromMillis(latestDate.getTime()) + 1) - 1);
                 xAxisFormat = "dd.MM.yy";
                 SimpleDateFormat fullFormat = new SimpleDateFormat("dd.MM.yy", Locale.getDefault());
                 rangeLabel = "Full: " + fullFormat.format(rangeStart) + " - " + fullFormat.format(rangeEnd);
-                btnTimePrev.setEnabled(false);
-                btnTimeNext.setEnabled(false);
-                break;
-        }
-        tvTimeRangeLabel.setText(rangeLabel + " ▼");
-        if (timeRangeMode != TimeRangeMode.FULL)
-        {
-            btnTimePrev.setEnabled(true);
-            btnTimeNext.setEnabled(true);
-        }
-        Map<String, TreeMap<Integer, Long>> categoryData = new HashMap<>();
-        for (String category : categories)
-        {
-            categoryData.put(category, new TreeMap<>());
-        }
-        int maxIndex = 0;
-        switch (timeRangeMode)
-        {
-            case WEEK:
-                maxIndex = WEEK_MAX_INDEX;
-                break;
-            case MONTH:
-                Calendar monthCalendar = Calendar.getInstance();
-                monthCalendar.setTime(rangeStart);
-                monthCalendar.add(Calendar.MONTH, 1);
-                monthCalendar.add(Calendar.DAY_OF_MONTH, -1);
-                maxIndex = TimeUtils.daysBetween(rangeStart, monthCalendar.getTime()) / DAYS_PER_MONTH_PERIOD;
-                break;
-            case YEAR:
-                maxIndex = MONTHS_PER_YEAR - 1;
-                break;
-            case FULL:
-            default:
-                maxIndex = FULL_MODE_PERIODS - 1;
                 break;
         }
-        for (TimeEntry entry : allEntries)
-        {
-            if (entry.getStartTime() == null) continue;
-            if (entry.getStartTime().before(rangeStart) || entry.getStartTime().after(rangeEnd))
-            {
-                continue;
-            }
-            String category = entry.getCategory();
-            int index;
-            switch (timeRangeMode)
-            {
-                case WEEK:
-                    index = TimeUtils.daysBetween(rangeStart, entry.getStartTime()) - 1;
-                    break;
-                case MONTH:
-                    index = TimeUtils.daysBetween(rangeStart, entry.getStartTime()) / DAYS_PER_MONTH_PERIOD;
-                    break;
-                case YEAR:
-                    Calendar entryCalendar = Calendar.getInstance();
-                    entryCalendar.setTime(entry.getStartTime());
-                    Calendar startCalendar = Calendar.getInstance();
-                    startCalendar.setTime(rangeStart);
-                    index = (entryCalendar.get(Calendar.YEAR) - startCalendar.get(Calendar.YEAR)) * MONTHS_PER_YEAR +
-                            (entryCalendar.get(Calendar.MONTH) - startCalendar.get(Calendar.MONTH));
-                    break;
-                case FULL:
-                default:
-                    int totalDays = TimeUtils.daysBetween(rangeStart, rangeEnd) + 1;
-                    int daysSinceStart = TimeUtils.daysBetween(rangeStart, entry.getStartTime());
-                    index = Math.min((daysSinceStart * FULL_MODE_PERIODS) / totalDays, FULL_MODE_PERIODS - 1);
-                    break;
-            }
-            TreeMap<Integer, Long> dataMap = categoryData.get(category);
-            long currentTotal = dataMap.getOrDefault(index, 0L);
-            dataMap.put(index, currentTotal + entry.getDurationSeconds());
-        }
-        for (String category : categories)
-        {
-            TreeMap<Integer, Long> dataMap = categoryData.get(category);
-            for (int i = 0; i <= maxIndex; i++)
-            {
-                if (!dataMap.containsKey(i))
-                {
-                    dataMap.put(i, 0L);
-                }
-            }
-        }
+        long[] bucketStartDays = getBucketStartDays(mode, rangeStart, rangeEnd);
+        int bucketCount = bucketStartDays.length - 1;
         List<LineDataSet> dataSets = new ArrayList<>();
         int[] colors = {
             Color.rgb(255, 99, 71),
@@ -325,179 +400,130 @@ public class TimeOverviewManager
         int colorIndex = 0;
         for (String category : categories)
         {
-            TreeMap<Integer, Long> dataMap = categoryData.get(category);
-            // Skip categories with no hours in the current time range:
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+            long[] bucketSeconds = new long[bucketCount];
             long totalSeconds = 0;
-            for (Long seconds : dataMap.values())
+            for (int i = 0; i < bucketCount; i++)
             {
-                totalSeconds += seconds;
+                bucketSeconds[i] = timeEntryRepository.getTotalDurationForCategoryInDays(category, bucketStartDays[i], bucketStartDays[i + 1]);
+                totalSeconds += bucketSeconds[i];
             }
+            // Skip categories with no hours in the current time range:
             if (totalSeconds == 0)
             {
                 continue;
             }
             List<Entry> entries = new ArrayList<>();
-            for (Map.Entry<Integer, Long> dataEntry : dataMap.entrySet())
+            for (int i = 0; i < bucketCount; i++)
             {
-                float hours;
-                if (timeRangeMode == TimeRangeMode.WEEK)
-                {
-                    hours = dataEntry.getValue() / (float)SECONDS_PER_HOUR;
-                }
-                else if (timeRangeMode == TimeRangeMode.MONTH)
-                {
-                    hours = dataEntry.getValue() / (float)SECONDS_PER_HOUR / DAYS_PER_MONTH_PERIOD;
-                }
-                else if (timeRangeMode == TimeRangeMode.YEAR)
-                {
-                    Calendar monthStart = Calendar.getInstance();
-                    monthStart.setTime(rangeStart);
-                    monthStart.add(Calendar.MONTH, dataEntry.getKey());
-                    int daysInMonth = monthStart.getActualMaximum(Calendar.DAY_OF_MONTH);
-                    hours = dataEntry.getValue() / (float)SECONDS_PER_HOUR / daysInMonth;
-                }
-                else
-                {
-                    int totalDays = TimeUtils.daysBetween(rangeStart, rangeEnd) + 1;
-                    int daysPerPeriod = totalDays / FULL_MODE_PERIODS;
-                    if (daysPerPeriod < 1) daysPerPeriod = 1;
-                    hours = dataEntry.getValue() / (float)SECONDS_PER_HOUR / daysPerPeriod;
-                }
-                entries.add(new Entry(dataEntry.getKey(), hours));
-            }
-            if (!entries.isEmpty())
-            {
-                LineDataSet dataSet = new LineDataSet(entries, category);
-                dataSet.setColor(colors[colorIndex % colors.length]);
-                dataSet.setCircleColor(colors[colorIndex % colors.length]);
-                dataSet.setLineWidth(LINE_WIDTH);
-                dataSet.setCircleRadius(CIRCLE_RADIUS);
-                dataSet.setDrawCircleHole(false);
-                dataSet.setValueTextSize(0f);
-                dataSet.setDrawFilled(false);
-                dataSet.setMode(LineDataSet.Mode.LINEAR);
-                dataSets.add(dataSet);
-                colorIndex++;
+                float hours = bucketSeconds[i] / (float)SECONDS_PER_HOUR / getAveragingDays(mode, bucketStartDays, i);
+                entries.add(new Entry(i, hours));
             }
+            LineDataSet dataSet = new LineDataSet(entries, category);
+            dataSet.setColor(colors[colorIndex % colors.length]);
+            dataSet.setCircleColor(colors[colorIndex % colors.length]);
+            dataSet.setLineWidth(LINE_WIDTH);
+            dataSet.setCircleRadius(CIRCLE_RADIUS);
+            dataSet.setDrawCircleHole(false);
+            dataSet.setValueTextSize(0f);
+            dataSet.setDrawFilled(false);
+            dataSet.setMode(LineDataSet.Mode.LINEAR);
+            dataSets.add(dataSet);
+            colorIndex++;
         }
-        if (!dataSets.isEmpty())
-        {
-            LineData lineData = new LineData(dataSets.toArray(new LineDataSet[0]));
-            chart.setData(lineData);
-            final Date finalRangeStart = rangeStart;
-            final Date finalRangeEnd = rangeEnd;
-            final String finalXAxisFormat = xAxisFormat;
-            XAxis xAxis = chart.getXAxis();
-            if (timeRangeMode == TimeRangeMode.WEEK)
-            {
-                xAxis.setLabelCount(WEEK_DAYS, true);
-                xAxis.setAxisMinimum(0f);
-                xAxis.setAxisMaximum(WEEK_MAX_INDEX);
-            }
-            else
-            {
-                xAxis.resetAxisMinimum();
-                xAxis.resetAxisMaximum();
-            }
-            xAxis.setValueFormatter(new ValueFormatter()
-            {
-                private SimpleDateFormat dateFormat = new SimpleDateFormat(finalXAxisFormat, Locale.getDefault());
+        return new ChartData(mode, offset, rangeLabel, rangeStart, rangeEnd, xAxisFormat, bucketStartDays, dataSets);
+    }
 
-                @Override
-                public String getFormattedValue(float value)
-                {
-                    Calendar calendar = Calendar.getInstance();
-                    calendar.setTime(finalRangeStart);
-                    switch (timeRangeMode)
-                    {
-                        case WEEK:
-                            calendar.add(Calendar.DAY_OF_YEAR, (int)value);
-                            break;
-                        case MONTH:
-                            int startDay = (int)value * DAYS_PER_MONTH_PERIOD + 1;
-                            int endDay = Math.min(startDay + DAYS_PER_MONTH_PERIOD - 1, calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-                            return startDay + "." + "-" + endDay + ".";
-                        case YEAR:
-                            if ((int)value % YEAR_LABEL_SKIP != 0)
-                            {
-                                return "";
-                            }
-                            calendar.add(Calendar.MONTH, (int)value);
-                            break;
-                        case FULL:
-                        default:
-                            if ((int)value % FULL_LABEL_SKIP != 0)
-                            {
-                                return "";
-                            }
-                            int totalDays = TimeUtils.daysBetween(finalRangeStart, finalRangeEnd) + 1;
-                            int daysPerPeriod = totalDays / FULL_MODE_PERIODS;
-                            if (daysPerPeriod < 1) daysPerPeriod = 1;
-                            int periodIndex = (int)value;
-                            Calendar periodStart = Calendar.getInstance();
-                            periodStart.setTime(finalRangeStart);
-                            periodStart.add(Calendar.DAY_OF_YEAR, periodIndex * daysPerPeriod);
-                            Calendar periodEnd = Calendar.getInstance();
-                            periodEnd.setTime(periodStart.getTime());
-                            if (periodIndex == FULL_MODE_PERIODS - 1)
-                            {
-                                periodEnd.setTime(finalRangeEnd);
-                            }
-                            else
-                            {
-                                periodEnd.add(Calendar.DAY_OF_YEAR, daysPerPeriod - 1);
-                            }
-                            SimpleDateFormat rangeFormat = new SimpleDateFormat("dd.MM.yy", Locale.getDefault());
-                            return rangeFormat.format(periodStart.getTime()) + "-" + rangeFormat.format(periodEnd.getTime());
-                    }
-                    return dateFormat.format(calendar.getTime());
-                }
-            });
-            YAxis leftAxis = chart.getAxisLeft();
-            leftAxis.setValueFormatter(new ValueFormatter()
-            {
-                @Override
-                public String getFormattedValue(float value)
-                {
-                    return String.format(Locale.getDefault(), "%.1fh", value);
-                }
-            });
+    /**
+     * Shows computed chart data, which must happen on the main thread.
+     */
+    private void applyChartData(ChartData chartData)
+    {
+        currentTimeOffset = chartData.offset;
+        if (chartData.rangeLabel == null)
+        {
+            chart.clear();
             chart.invalidate();
+            tvTimeRangeLabel.setText("");
+            return;
         }
-        else
+        tvTimeRangeLabel.setText(chartData.rangeLabel + " ▼");
+        btnTimePrev.setEnabled(chartData.mode != TimeRangeMode.FULL);
+        btnTimeNext.setEnabled(chartData.mode != TimeRangeMode.FULL);
+        if (chartData.dataSets.isEmpty())
         {
             chart.clear();
             chart.invalidate();
-            // Auto-navigate to nearest period with data if requested and current period is empty:
-            if (autoNavigateToData && timeRangeMode != TimeRangeMode.FULL)
+            return;
+        }
+        LineData lineData = new LineData(chartData.dataSets.toArray(new LineDataSet[0]));
+        chart.setData(lineData);
+        final TimeRangeMode mode = chartData.mode;
+        final long[] bucketStartDays = chartData.bucketStartDays;
+        XAxis xAxis = chart.getXAxis();
+        if (mode == TimeRangeMode.WEEK)
+        {
+            xAxis.setLabelCount(WEEK_DAYS, true);
+            xAxis.setAxisMinimum(0f);
+            xAxis.setAxisMaximum(WEEK_MAX_INDEX);
+        }
+        else
+        {
+            xAxis.resetAxisMinimum();
+            xAxis.resetAxisMaximum();
+        }
+        xAxis.setValueFormatter(new ValueFormatter()
+        {
+            private SimpleDateFormat dateFormat = new SimpleDateFormat(chartData.xAxisFormat, Locale.getDefault());
+
+            @Override
+            public String getFormattedValue(float value)
             {
-                // Check previous periods first (more recent data):
-                boolean foundData = false;
-                for (int offset = -1; offset >= -MAX_PERIOD_SEARCH; offset--)
+                int bucket = (int)value;
+                if (bucket < 0 || bucket >= bucketStartDays.length - 1)
                 {
-                    if (hasDataInPeriod(offset))
-                    {
-                        currentTimeOffset = offset;
-                        foundData = true;
-                        loadChartData(false);
-                        return;
-                    }
+                    return "";
                 }
-                // If no data in past, check future periods:
-                if (!foundData)
+                long bucketStartDay = bucketStartDays[bucket];
+                switch (mode)
                 {
-                    for (int offset = 1; offset <= MAX_PERIOD_SEARCH; offset++)
-                    {
-                        if (hasDataInPeriod(offset))
+                    case MONTH:
+                        long startDay = bucketStartDay - bucketStartDays[0] + 1;
+                        long endDay = bucketStartDays[bucket + 1] - bucketStartDays[0];
+                        return startDay + "." + "-" + endDay + ".";
+                    case YEAR:
+                        if (bucket % YEAR_LABEL_SKIP != 0)
+                        {
+                            return "";
+                        }
+                        break;
+                    case FULL:
+                        if (bucket % FULL_LABEL_SKIP != 0)
                         {
-                            currentTimeOffset = offset;
-                            loadChartData(false);
-                            return;
+                            return "";
                         }
-                    }
+                        Date bucketEnd = new Date(EpochDays.toMillis(bucketStartDays[bucket + 1] - 1));
+                        return dateFormat.format(new Date(EpochDays.toMillis(bucketStartDay))) + "-" + dateFormat.format(bucketEnd);
+                    case WEEK:
+                    default:
+                        break;
                 }
+                return dateFormat.format(new Date(EpochDays.toMillis(bucketStartDay)));
             }
-        }
+        });
+        YAxis leftAxis = chart.getAxisLeft();
+        leftAxis.setValueFormatter(new ValueFormatter()
+        {
+            @Override
+            public String getFormattedValue(float value)
+            {
+                return String.format(Locale.getDefault(), "%.1fh", value);
+            }
+        });
+        chart.invalidate();
     }
 
     public void setTimeRangeMode(TimeRangeMode mode)
@@ -514,15 +540,12 @@ public class TimeOverviewManager
         {
             return;
         }
-        // Find the next previous period with data (skip empty periods):
-        for (int offset = currentTimeOffset - 1; offset >= -MAX_PERIOD_SEARCH; offset--)
+        // Jump directly to the closest earlier period with data (skips empty periods):
+        Date previousStart = timeEntryRepository.findPreviousEntryStart(getPeriodStart(timeRangeMode, currentTimeOffset));
+        if (previousStart != null)
         {
-            if (hasDataInPeriod(offset))
-            {
-                currentTimeOffset = offset;
-                loadChartData();
-                return;
-            }
+            currentTimeOffset = getPeriodOffset(timeRangeMode, previousStart);
+            loadChartData();
         }
     }
 
@@ -532,15 +555,12 @@ public class TimeOverviewManager
         {
             return;
         }
-        // Find the next future period with data (skip empty periods):
-        for (int offset = currentTimeOffset + 1; offset <= MAX_PERIOD_SEARCH; offset++)
+        // Jump directly to the closest later period with data (skips empty periods):
+        Date nextStart = timeEntryRepository.findNextEntryStart(getPeriodStart(timeRangeMode, currentTimeOffset + 1));
+        if (nextStart != null)
         {
-            if (hasDataInPeriod(offset))
-            {
-                currentTimeOffset = offset;
-                loadChartData();
-                return;
-            }
+            currentTimeOffset = getPeriodOffset(timeRangeMode, nextStart);
+            loadChartData();
         }
     }
 
@@ -549,78 +569,105 @@ public class TimeOverviewManager
         return timeRangeMode;
     }
 
-    private boolean hasDataInPeriod(int offset)
+    /**
+     * Returns the calendar unit of a time range mode; the full range is navigated like years.
+     */
+    private static EpochDays.PeriodUnit getPeriodUnit(TimeRangeMode mode)
     {
-        List<TimeEntry> allEntries = timeEntryRepository.getAllEntries();
-        if (allEntries.isEmpty())
+        switch (mode)
         {
-            return false;
+            case WEEK:
+                return EpochDays.PeriodUnit.WEEK;
+            case MONTH:
+                return EpochDays.PeriodUnit.MONTH;
+            case YEAR:
+            case FULL:
+            default:
+                return EpochDays.PeriodUnit.YEAR;
         }
-        Calendar calendar = Calendar.getInstance();
-        Date rangeStart;
-        Date rangeEnd;
-        switch (timeRangeMode)
+    }
+
+    /**
+     * Returns the start of the period at the given offset from the current one.
+     */
+    private static Date getPeriodStart(TimeRangeMode mode, int offset)
+    {
+        return new Date(EpochDays.toMillis(EpochDays.getPeriodStart(getPeriodUnit(mode), EpochDays.today(), offset)));
+    }
+
+    /**
+     * Returns the offset from the current period to the period containing the given date.
+     */
+    private static int getPeriodOffset(TimeRangeMode mode, Date date)
+    {
+        EpochDays.PeriodUnit unit = getPeriodUnit(mode);
+        return (int)(EpochDays.getPeriodIndex(unit, EpochDays.fromMillis(date.getTime())) - EpochDays.getPeriodIndex(unit, EpochDays.today()));
+    }
+
+    /**
+     * Returns the local epoch days at which each chart bucket starts, followed by the exclusive end day.
+     */
+    private static long[] getBucketStartDays(TimeRangeMode mode, Date rangeStart, Date rangeEnd)
+    {
+        long firstDay = EpochDays.fromMillis(rangeStart.getTime());
+        long endDay = EpochDays.fromMillis(rangeEnd.getTime()) + 1;
+        long[] bucketStartDays;
+        switch (mode)
         {
             case WEEK:
-                int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-                int daysFromMonday = (dayOfWeek - Calendar.MONDAY + 7) % 7;
-                calendar.add(Calendar.DAY_OF_YEAR, -daysFromMonday);
-                calendar.add(Calendar.WEEK_OF_YEAR, offset);
-                rangeStart = getDayStart(calendar.getTime());
-                calendar.add(Calendar.DAY_OF_YEAR, 6);
-                rangeEnd = getDayEnd(calendar.getTime());
+                bucketStartDays = new long[WEEK_DAYS + 1];
+                for (int i = 0; i <= WEEK_DAYS; i++)
+                {
+                    bucketStartDays[i] = firstDay + i;
+                }
                 break;
             case MONTH:
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.add(Calendar.MONTH, offset);
-                rangeStart = getDayStart(calendar.getTime());
-                calendar.add(Calendar.MONTH, 1);
-                calendar.add(Calendar.DAY_OF_MONTH, -1);
-                rangeEnd = getDayEnd(calendar.getTime());
+                int monthBuckets = (int)((endDay - firstDay + DAYS_PER_MONTH_PERIOD - 1) / DAYS_PER_MONTH_PERIOD);
+                bucketStartDays = new long[monthBuckets + 1];
+                for (int i = 0; i < monthBuckets; i++)
+                {
+                    bucketStartDays[i] = firstDay + (long)i * DAYS_PER_MONTH_PERIOD;
+                }
+                bucketStartDays[monthBuckets] = endDay;
                 break;
             case YEAR:
-                calendar.set(Calendar.DAY_OF_YEAR, 1);
-                calendar.add(Calendar.YEAR, offset);
-                rangeStart = getDayStart(calendar.getTime());
-                calendar.add(Calendar.YEAR, 1);
-                calendar.add(Calendar.DAY_OF_YEAR, -1);
-                rangeEnd = getDayEnd(calendar.getTime());
+                bucketStartDays = new long[MONTHS_PER_YEAR + 1];
+                for (int i = 0; i < MONTHS_PER_YEAR; i++)
+                {
+                    bucketStartDays[i] = EpochDays.getPeriodStart(EpochDays.PeriodUnit.MONTH, firstDay, i);
+                }
+                bucketStartDays[MONTHS_PER_YEAR] = endDay;
                 break;
+            case FULL:
             default:
-                return false;
-        }
-        for (TimeEntry entry : allEntries)
-        {
-            if (entry.getStartTime() != null &&
-                !entry.getStartTime().before(rangeStart) &&
-                !entry.getStartTime().after(rangeEnd) &&
-                entry.getDurationSeconds() > 0)
-            {
-                return true;
-            }
+                long totalDays = endDay - firstDay;
+                bucketStartDays = new long[FULL_MODE_PERIODS + 1];
+                for (int i = 0; i <= FULL_MODE_PERIODS; i++)
+                {
+                    bucketStartDays[i] = firstDay + (i * totalDays + FULL_MODE_PERIODS - 1) / FULL_MODE_PERIODS;  // Ceiling keeps the former index rounding
+                }
+                break;
         }
-        return false;
+        return bucketStartDays;
     }
 
-    private Date getDayEnd(Date date)
+    /**
+     * Returns the number of days a bucket's total is averaged over to get daily hours.
+     */
+    private static int getAveragingDays(TimeRangeMode mode, long[] bucketStartDays, int bucketIndex)
     {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        calendar.set(Calendar.HOUR_OF_DAY, 23);
-        calendar.set(Calendar.MINUTE, 59);
-        calendar.set(Calendar.SECOND, 59);
-        calendar.set(Calendar.MILLISECOND, 999);
-        return calendar.getTime();
-    }
-
-    private Date getDayStart(Date date)
-    {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        return calendar.getTime();
+        switch (mode)
+        {
+            case WEEK:
+                return 1;
+            case MONTH:
+                return DAYS_PER_MONTH_PERIOD;
+            case YEAR:
+                return (int)(bucketStartDays[bucketIndex + 1] - bucketStartDays[bucketIndex]);
+            case FULL:
+            default:
+                long totalDays = bucketStartDays[bucketStartDays.length - 1] - bucketStartDays[0];
+                return (int)Math.max(1, totalDays / FULL_MODE_PERIODS);
+        }
     }
 }
@@ -2,6 +2,8 @@ package com.romanbrunner.apps.projecttimetracker;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
@@ -21,18 +23,18 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.textfield.TextInputEditText;
 import com.romanbrunner.apps.projecttimetracker.data.DailyTimePoolRepository;
 import com.romanbrunner.apps.projecttimetracker.data.TimeEntryRepository;
-import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
+import com.romanbrunner.apps.projecttimetracker.util.EpochDays;
 import com.romanbrunner.apps.projecttimetracker.util.PreferencesManager;
 import com.romanbrunner.apps.projecttimetracker.util.TimeUtils;
 
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -40,8 +42,17 @@ import java.util.Set;
  */
 public class TimePoolsManager
 {
+    /**
+     * Callback interface for changes to pool minutes, the reset interval or the pool categories.
+     */
+    public interface OnPoolsChangedListener
+    {
+        void onPoolsChanged();
+    }
+
     // Constants:
     private static final int SECONDS_PER_MINUTE = 60;
+    private static final long SAVE_DELAY_MILLIS = 500;  // Coalesces pool edits typed in quick succession into one save
     public enum PoolResetInterval
     {
         DAILY, WEEKLY, MONTHLY, YEARLY, NEVER
@@ -55,6 +66,10 @@ public class TimePoolsManager
     private final TextView tvPoolResetInterval;
     private PoolAdapter poolAdapter;
     private PoolResetInterval poolResetInterval = PoolResetInterval.NEVER;
+    private final Handler saveHandler = new Handler(Looper.getMainLooper());
+    private final Runnable saveRunnable;
+    private boolean isMinutesEditPending = false;  // Typed minutes are announced to the listener with the debounced save
+    private OnPoolsChangedListener listener;
 
     public TimePoolsManager(Context context, RecyclerView rvPools, DailyTimePoolRepository dailyTimePoolRepository, TimeEntryRepository timeEntryRepository, PreferencesManager preferencesManager, TextView tvPoolResetInterval)
     {
@@ -64,10 +79,24 @@ public class TimePoolsManager
         this.timeEntryRepository = timeEntryRepository;
         this.preferencesManager = preferencesManager;
         this.tvPoolResetInterval = tvPoolResetInterval;
+        saveRunnable = this::flushMinutesEdits;
         restorePoolResetInterval();
         setupResetIntervalDropdown();
     }
 
+    public void setOnPoolsChangedListener(OnPoolsChangedListener listener)
+    {
+        this.listener = listener;
+    }
+
+    private void notifyPoolsChanged()
+    {
+        if (listener != null)
+        {
+            listener.onPoolsChanged();
+        }
+    }
+
     public void setupRecyclerView()
     {
         poolAdapter = new PoolAdapter(getPoolData());
@@ -75,6 +104,34 @@ public class TimePoolsManager
         rvPools.setAdapter(poolAdapter);
     }
 
+    /**
+     * Saves pool edits that are still waiting for their debounce.
+     */
+    public void onPause()
+    {
+        saveHandler.removeCallbacks(saveRunnable);
+        flushMinutesEdits();
+    }
+
+    /**
+     * Persists the typed minutes and notifies the listener once per pause in typing instead of on every keystroke.
+     */
+    private void flushMinutesEdits()
+    {
+        dailyTimePoolRepository.flush();
+        if (isMinutesEditPending)
+        {
+            isMinutesEditPending = false;
+            notifyPoolsChanged();
+        }
+    }
+
+    private void scheduleSave()
+    {
+        saveHandler.removeCallbacks(saveRunnable);
+        saveHandler.postDelayed(saveRunnable, SAVE_DELAY_MILLIS);
+    }
+
     private void setupResetIntervalDropdown()
     {
         tvPoolResetInterval.setOnClickListener(v -> showResetIntervalPopup());
@@ -112,6 +169,7 @@ public class TimePoolsManager
         preferencesManager.setPoolResetInterval(interval.name());
         updateResetIntervalLabel();
         refreshPoolsData();
+        notifyPoolsChanged();
     }
 
     private void restorePoolResetInterval()
@@ -162,85 +220,51 @@ public class TimePoolsManager
 
     /**
      * Helper to calculate period bounds and pool size for a given interval.
-     * Returns {periodStart, periodEnd, poolSeconds}
+     * Returns {periodStart, periodEnd, poolDays, poolSeconds}
      */
     public static class PeriodCalculation
     {
         public final Date periodStart;
         public final Date periodEnd;
+        public final int poolDays;
         public final long poolSeconds;
 
-        public PeriodCalculation(Date periodStart, Date periodEnd, long poolSeconds)
+        public PeriodCalculation(Date periodStart, Date periodEnd, int poolDays, long poolSeconds)
         {
             this.periodStart = periodStart;
             this.periodEnd = periodEnd;
+            this.poolDays = poolDays;
             this.poolSeconds = poolSeconds;
         }
     }
 
     public static PeriodCalculation calculatePeriod(PoolResetInterval interval, int dailyMinutes)
     {
-        Calendar cal = Calendar.getInstance();
-        Date periodStart;
-        Date periodEnd;
-        long poolSeconds;
-
+        EpochDays.PeriodUnit unit;
         switch (interval)
         {
             case DAILY:
-                cal.set(Calendar.HOUR_OF_DAY, 0);
-                cal.set(Calendar.MINUTE, 0);
-                cal.set(Calendar.SECOND, 0);
-                cal.set(Calendar.MILLISECOND, 0);
-                periodStart = cal.getTime();
-                cal.add(Calendar.DAY_OF_YEAR, 1);
-                periodEnd = cal.getTime();
-                poolSeconds = (long)dailyMinutes * SECONDS_PER_MINUTE;
+                unit = EpochDays.PeriodUnit.DAY;
                 break;
             case WEEKLY:
-                int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
-                int daysFromMonday = (dayOfWeek - Calendar.MONDAY + 7) % 7;
-                cal.add(Calendar.DAY_OF_YEAR, -daysFromMonday);
-                cal.set(Calendar.HOUR_OF_DAY, 0);
-                cal.set(Calendar.MINUTE, 0);
-                cal.set(Calendar.SECOND, 0);
-                cal.set(Calendar.MILLISECOND, 0);
-                periodStart = cal.getTime();
-                cal.add(Calendar.DAY_OF_YEAR, 7);
-                periodEnd = cal.getTime();
-                poolSeconds = (long)dailyMinutes * SECONDS_PER_MINUTE * 7;
+                unit = EpochDays.PeriodUnit.WEEK;
                 break;
             case MONTHLY:
-                cal.set(Calendar.DAY_OF_MONTH, 1);
-                cal.set(Calendar.HOUR_OF_DAY, 0);
-                cal.set(Calendar.MINUTE, 0);
-                cal.set(Calendar.SECOND, 0);
-                cal.set(Calendar.MILLISECOND, 0);
-                periodStart = cal.getTime();
-                int daysInMonth = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
-                cal.add(Calendar.MONTH, 1);
-                periodEnd = cal.getTime();
-                poolSeconds = (long)dailyMinutes * SECONDS_PER_MINUTE * daysInMonth;
+                unit = EpochDays.PeriodUnit.MONTH;
                 break;
             case YEARLY:
-                cal.set(Calendar.DAY_OF_YEAR, 1);
-                cal.set(Calendar.HOUR_OF_DAY, 0);
-                cal.set(Calendar.MINUTE, 0);
-                cal.set(Calendar.SECOND, 0);
-                cal.set(Calendar.MILLISECOND, 0);
-                periodStart = cal.getTime();
-                int daysInYear = cal.getActualMaximum(Calendar.DAY_OF_YEAR);
-                cal.add(Calendar.YEAR, 1);
-                periodEnd = cal.getTime();
-                poolSeconds = (long)dailyMinutes * SECONDS_PER_MINUTE * daysInYear;
+                unit = EpochDays.PeriodUnit.YEAR;
                 break;
             case NEVER:
             default:
                 // For NEVER, return null to indicate full history calculation
                 return null;
         }
-
-        return new PeriodCalculation(periodStart, periodEnd, poolSeconds);
+        long periodStartDay = EpochDays.getPeriodStart(unit, EpochDays.today());
+        int poolDays = EpochDays.getDaysInPeriod(unit, periodStartDay);
+        Date periodStart = new Date(EpochDays.toMillis(periodStartDay));
+        Date periodEnd = new Date(EpochDays.toMillis(periodStartDay + poolDays));
+        return new PeriodCalculation(periodStart, periodEnd, poolDays, (long)dailyMinutes * SECONDS_PER_MINUTE * poolDays);
     }
 
     public void refreshPoolsData()
@@ -251,16 +275,31 @@ public class TimePoolsManager
         }
     }
 
+    /**
+     * Asks whether the file is merged into the current pools or replaces them, then loads it.
+     */
     public void loadPoolsFromFile(Uri uri)
+    {
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.load_mode_title)
+                .setMessage(R.string.load_mode_message)
+                .setPositiveButton(R.string.merge, (dialog, which) -> loadPoolsFromFile(uri, TimeEntryRepository.ImportMode.MERGE))
+                .setNeutralButton(R.string.replace, (dialog, which) -> loadPoolsFromFile(uri, TimeEntryRepository.ImportMode.REPLACE))
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void loadPoolsFromFile(Uri uri, TimeEntryRepository.ImportMode mode)
     {
         try
         {
             InputStream inputStream = context.getContentResolver().openInputStream(uri);
             if (inputStream != null)
             {
-                dailyTimePoolRepository.importFromTextFile(inputStream);
+                dailyTimePoolRepository.importFromTextFile(inputStream, mode);
                 inputStream.close();
                 refreshPoolsData();
+                notifyPoolsChanged();
                 Toast.makeText(context, "Pools loaded successfully", Toast.LENGTH_SHORT).show();
             }
         }
@@ -312,6 +351,7 @@ public class TimePoolsManager
                                 timeEntryRepository.removeEntriesByCategory(categoryToRemove);
                                 dailyTimePoolRepository.removeCategory(categoryToRemove);
                                 refreshPoolsData();
+                                notifyPoolsChanged();
                                 Toast.makeText(context, "Category and its entries removed", Toast.LENGTH_SHORT).show();
                             })
                             .setNegativeButton(R.string.cancel, null)
@@ -345,6 +385,35 @@ public class TimePoolsManager
                     {
                         dailyTimePoolRepository.setDailyMinutes(category, minutes);
                         refreshPoolsData();
+                        notifyPoolsChanged();
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Renames a category in the entries and the pools as one action, merging into an existing category that keeps its pool minutes.
+     */
+    private void showRenameCategoryDialog(String category)
+    {
+        View dialogView = LayoutInflater.from(context).inflate(R.layout.dialog_rename, null);
+        TextInputEditText etNewName = dialogView.findViewById(R.id.et_new_name);
+        etNewName.setText(category);
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.rename_category)
+                .setMessage(R.string.rename_message)
+                .setView(dialogView)
+                .setPositiveButton(R.string.rename, (dialog, which) ->
+                {
+                    String newCategory = etNewName.getText() != null ? etNewName.getText().toString().trim() : "";
+                    if (!newCategory.isEmpty() && !newCategory.equals(category))
+                    {
+                        Map<String, String> renames = Collections.singletonMap(category, newCategory);
+                        dailyTimePoolRepository.renameCategories(renames);
+                        timeEntryRepository.renameCategories(renames);
+                        refreshPoolsData();
+                        notifyPoolsChanged();
                     }
                 })
                 .setNegativeButton(R.string.cancel, null)
@@ -355,57 +424,62 @@ public class TimePoolsManager
     {
         Set<String> allCategories = new HashSet<>();
         allCategories.addAll(dailyTimePoolRepository.getCategories());
-        allCategories.addAll(timeEntryRepository.getAllValuesForField(TimeEntry::getCategory, TimeEntryRepository.DEFAULT_CATEGORY));
+        allCategories.addAll(timeEntryRepository.getCategories());
+        PeriodCalculation period = calculatePeriod(poolResetInterval, 0);  // Only the bounds are used, minutes vary per category
+        Date rangeStart = period != null ? period.periodStart : null;
+        Date rangeEnd = period != null ? period.periodEnd : null;
+        Map<String, TimeEntryRepository.CategoryStatistics> statistics = timeEntryRepository.getCategoryStatistics(rangeStart, rangeEnd);
+        Date now = new Date();
         List<CategoryPoolData> data = new ArrayList<>();
         for (String category : allCategories)
         {
+            TimeEntryRepository.CategoryStatistics categoryStatistics = statistics.getOrDefault(category, TimeEntryRepository.CategoryStatistics.EMPTY);
+            long poolDays;
+            if (period != null)
+            {
+                poolDays = period.poolDays;
+            }
+            else
+            {
+                // NEVER: calculate from earliest entry
+                Date earliestDate = categoryStatistics.earliestStartMillis < now.getTime() ? new Date(categoryStatistics.earliestStartMillis) : now;
+                poolDays = TimeUtils.daysBetween(earliestDate, now);
+            }
             int dailyMinutes = dailyTimePoolRepository.getDailyMinutes(category);
-            long totalSeconds = timeEntryRepository.getTotalDurationForField(category, TimeEntry::getCategory);
-            long poolSeconds = calculatePoolTime(category, dailyMinutes);
-            data.add(new CategoryPoolData(category, dailyMinutes, poolSeconds, totalSeconds));
+            data.add(new CategoryPoolData(category, dailyMinutes, poolDays, categoryStatistics.usedSeconds, categoryStatistics.totalSeconds));
         }
         Collections.sort(data, (a, b) -> a.category.compareToIgnoreCase(b.category));
         return data;
     }
 
-    private long calculatePoolTime(String category, int dailyMinutes)
-    {
-        if (dailyMinutes <= 0)
-        {
-            return 0;
-        }
-
-        PeriodCalculation period = calculatePeriod(poolResetInterval, dailyMinutes);
-        if (period != null)
-        {
-            long usedSeconds = timeEntryRepository.getTotalDurationForCategoryInRange(category, period.periodStart, period.periodEnd);
-            return period.poolSeconds - usedSeconds;
-        }
-        else
-        {
-            // NEVER: calculate from earliest entry
-            Date earliestDate = timeEntryRepository.getEarliestStartDateForCategory(category);
-            int days = TimeUtils.daysBetween(earliestDate, new Date());
-            long poolSeconds = (long)dailyMinutes * SECONDS_PER_MINUTE * days;
-            long usedSeconds = timeEntryRepository.getTotalDurationForField(category, TimeEntry::getCategory);
-            return poolSeconds - usedSeconds;
-        }
-    }
-
+    /**
+     * Pool row state; the period length and used time do not depend on the daily minutes, so edits recompute the pool without queries.
+     */
     private static class CategoryPoolData
     {
         String category;
         int dailyMinutes;
-        long poolSeconds;
+        long poolDays;
+        long usedSeconds;
         long totalSeconds;
 
-        CategoryPoolData(String category, int dailyMinutes, long poolSeconds, long totalSeconds)
+        CategoryPoolData(String category, int dailyMinutes, long poolDays, long usedSeconds, long totalSeconds)
         {
             this.category = category;
             this.dailyMinutes = dailyMinutes;
-            this.poolSeconds = poolSeconds;
+            this.poolDays = poolDays;
+            this.usedSeconds = usedSeconds;
             this.totalSeconds = totalSeconds;
         }
+
+        long getPoolSeconds()
+        {
+            if (dailyMinutes <= 0)
+            {
+                return 0;
+            }
+            return (long)dailyMinutes * SECONDS_PER_MINUTE * poolDays - usedSeconds;
+        }
     }
 
     private class PoolAdapter extends RecyclerView.Adapter<PoolAdapter.ViewHolder>
@@ -436,17 +510,14 @@ public class TimePoolsManager
         {
             CategoryPoolData item = data.get(position);
             holder.tvCategory.setText(item.category);
+            holder.tvCategory.setOnLongClickListener(v ->
+            {
+                showRenameCategoryDialog(item.category);
+                return true;
+            });
             holder.etDailyMinutes.removeTextChangedListener(holder.textWatcher);
             holder.etDailyMinutes.setText(String.valueOf(item.dailyMinutes));
-            holder.tvPoolTime.setText(TimeUtils.formatDuration(Math.abs(item.poolSeconds)));
-            if (item.poolSeconds >= 0)
-            {
-                holder.tvPoolTime.setTextColor(context.getResources().getColor(R.color.pool_positive, null));
-            }
-            else
-            {
-                holder.tvPoolTime.setTextColor(context.getResources().getColor(R.color.pool_negative, null));
-            }
+            showPoolTime(holder, item.getPoolSeconds());
             holder.tvTotalTime.setText(TimeUtils.formatDuration(item.totalSeconds));
             holder.textWatcher = new TextWatcher()
             {
@@ -467,22 +538,30 @@ public class TimePoolsManager
                     catch (NumberFormatException e)
                     {
                     }
-                    dailyTimePoolRepository.setDailyMinutes(item.category, minutes);
-                    long newPoolSeconds = calculatePoolTime(item.category, minutes);
-                    holder.tvPoolTime.setText(TimeUtils.formatDuration(Math.abs(newPoolSeconds)));
-                    if (newPoolSeconds >= 0)
-                    {
-                        holder.tvPoolTime.setTextColor(context.getResources().getColor(R.color.pool_positive, null));
-                    }
-                    else
-                    {
-                        holder.tvPoolTime.setTextColor(context.getResources().getColor(R.color.pool_negative, null));
-                    }
+                    // Update memory and the row right away, persist and notify once typing pauses:
+                    item.dailyMinutes = Math.max(0, minutes);
+                    dailyTimePoolRepository.setDailyMinutesDeferred(item.category, minutes);
+                    isMinutesEditPending = true;
+                    scheduleSave();
+                    showPoolTime(holder, item.getPoolSeconds());
                 }
             };
             holder.etDailyMinutes.addTextChangedListener(holder.textWatcher);
         }
 
+        private void showPoolTime(ViewHolder holder, long poolSeconds)
+        {
+            holder.tvPoolTime.setText(TimeUtils.formatDuration(Math.abs(poolSeconds)));
+            if (poolSeconds >= 0)
+            {
+                holder.tvPoolTime.setTextColor(context.getResources().getColor(R.color.pool_positive, null));
+            }
+            else
+            {
+                holder.tvPoolTime.setTextColor(context.getResources().getColor(R.color.pool_negative, null));
+            }
+        }
+
         @Override
         public int getItemCount()
         {
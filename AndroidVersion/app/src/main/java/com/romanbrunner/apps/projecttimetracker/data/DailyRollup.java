@@ -0,0 +1,82 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracked seconds per category id and local epoch day, stored as dense day arrays.
+ */
+class DailyRollup
+{
+    // Constants:
+    private static final int DAY_MARGIN = 32;
+
+    private final Map<Integer, CategoryDays> categoryDays = new HashMap<>();
+
+    private static class CategoryDays
+    {
+        long firstDay;
+        long[] seconds;
+
+        CategoryDays(long epochDay)
+        {
+            firstDay = epochDay - DAY_MARGIN;
+            seconds = new long[DAY_MARGIN * 2];
+        }
+
+        void ensureDay(long epochDay)
+        {
+            if (epochDay < firstDay)
+            {
+                long newFirstDay = Math.min(epochDay, firstDay - seconds.length) - DAY_MARGIN;
+                long[] newSeconds = new long[(int)(firstDay - newFirstDay) + seconds.length];
+                System.arraycopy(seconds, 0, newSeconds, (int)(firstDay - newFirstDay), seconds.length);
+                firstDay = newFirstDay;
+                seconds = newSeconds;
+            }
+            else if (epochDay >= firstDay + seconds.length)
+            {
+                int required = (int)(epochDay - firstDay) + 1;
+                seconds = Arrays.copyOf(seconds, Math.max(required, seconds.length * 2) + DAY_MARGIN);
+            }
+        }
+    }
+
+    void clear()
+    {
+        categoryDays.clear();
+    }
+
+    void add(int categoryId, long epochDay, long deltaSeconds)
+    {
+        CategoryDays days = categoryDays.computeIfAbsent(categoryId, k -> new CategoryDays(epochDay));
+        days.ensureDay(epochDay);
+        days.seconds[(int)(epochDay - days.firstDay)] += deltaSeconds;
+    }
+
+    void removeCategory(int categoryId)
+    {
+        categoryDays.remove(categoryId);
+    }
+
+    /**
+     * Sums the seconds of a category over the epoch days [fromDay, toDayExclusive).
+     */
+    long sum(int categoryId, long fromDay, long toDayExclusive)
+    {
+        CategoryDays days = categoryDays.get(categoryId);
+        if (days == null)
+        {
+            return 0;
+        }
+        int from = (int)Math.max(0, fromDay - days.firstDay);
+        int to = (int)Math.min(days.seconds.length, toDayExclusive - days.firstDay);
+        long total = 0;
+        for (int i = from; i < to; i++)
+        {
+            total += days.seconds[i];
+        }
+        return total;
+    }
+}
@@ -32,6 +32,7 @@ public class DailyTimePoolRepository
     private final PreferencesManager preferencesManager;
     private final Gson gson;
     private Map<String, Integer> pools;
+    private boolean hasUnsavedChanges = false;  // Set by deferred edits until the next save
 
     public DailyTimePoolRepository(Context context)
     {
@@ -62,6 +63,18 @@ public class DailyTimePoolRepository
     {
         String json = gson.toJson(pools);
         preferencesManager.setTimePoolsJson(json);
+        hasUnsavedChanges = false;
+    }
+
+    /**
+     * Saves pending deferred edits, if there are any.
+     */
+    public void flush()
+    {
+        if (hasUnsavedChanges)
+        {
+            savePools();
+        }
     }
 
     public Set<String> getCategories()
@@ -85,12 +98,42 @@ public class DailyTimePoolRepository
         savePools();
     }
 
+    /**
+     * Updates a pool in memory only, leaving persistence to the next flush or save.
+     */
+    public void setDailyMinutesDeferred(String category, int minutes)
+    {
+        pools.put(category, Math.max(0, minutes));
+        hasUnsavedChanges = true;
+    }
+
     public void removeCategory(String category)
     {
         pools.remove(category);
         savePools();
     }
 
+    /**
+     * Renames pool categories in order and saves once; a category renamed onto an existing pool is merged into it and the existing minutes stay.
+     */
+    public void renameCategories(Map<String, String> renames)
+    {
+        boolean changed = false;
+        for (Map.Entry<String, String> rename : renames.entrySet())
+        {
+            Integer minutes = pools.remove(rename.getKey());
+            if (minutes != null)
+            {
+                pools.putIfAbsent(rename.getValue(), minutes);
+                changed = true;
+            }
+        }
+        if (changed)
+        {
+            savePools();
+        }
+    }
+
     public List<DailyTimePool> getAllPools()
     {
         List<DailyTimePool> list = new ArrayList<>();
@@ -129,9 +172,9 @@ public class DailyTimePoolRepository
     }
 
     /**
-     * Imports pools from a text file in Python format.
+     * Imports pools from a text file in Python format, merging keeps the pools of categories that are already set.
      */
-    public void importFromTextFile(InputStream inputStream) throws IOException
+    public void importFromTextFile(InputStream inputStream, TimeEntryRepository.ImportMode mode) throws IOException
     {
         BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
         Map<String, Integer> importedPools = new HashMap<>();
@@ -158,9 +201,15 @@ public class DailyTimePoolRepository
         {
             reader.close();
         }
-        // Replace current pools with imported ones:
-        pools.clear();
-        pools.putAll(importedPools);
+        if (mode == TimeEntryRepository.ImportMode.MERGE)
+        {
+            importedPools.forEach(pools::putIfAbsent);
+        }
+        else
+        {
+            pools.clear();
+            pools.putAll(importedPools);
+        }
         savePools();
     }
 }
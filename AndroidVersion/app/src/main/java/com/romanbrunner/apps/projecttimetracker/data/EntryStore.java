@@ -0,0 +1,628 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Columnar in-memory storage of time entries in insertion order, with names encoded through a dictionary.
+ * Entries live in slots; removal only marks a slot as removed and the slots are compacted once enough have piled up.
+ */
+class EntryStore
+{
+    // Constants:
+    static final long NO_START = Long.MIN_VALUE;  // Start millis of entries without a start time
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MIN_REMOVED_TO_COMPACT = 64;
+    private static final int COMPACT_DIVISOR = 4;  // Compact once more than a quarter of the slots are removed
+    private static final int EMPTY_BUCKET = 0;
+    private static final int HASH_MULTIPLIER = 31;
+
+    private final NameDictionary names;
+    private long[] idMostSignificant = new long[INITIAL_CAPACITY];
+    private long[] idLeastSignificant = new long[INITIAL_CAPACITY];
+    private String[] irregularIds = null;  // Only allocated once an id is not a canonical UUID
+    private long[] startMillis = new long[INITIAL_CAPACITY];
+    private long[] durationSeconds = new long[INITIAL_CAPACITY];
+    private int[] categoryIds = new int[INITIAL_CAPACITY];
+    private int[] projectIds = new int[INITIAL_CAPACITY];
+    private boolean[] isRemoved = new boolean[INITIAL_CAPACITY];
+    private int[] removedTree = null;  // Fenwick tree over the removed flags of all capacity slots, built on demand and dropped when slots move
+    private int[] idBuckets;  // Open-addressing hash table from entry id to slot + 1, EMPTY_BUCKET marks free buckets
+    private int slotCount = 0;
+    private int removedCount = 0;
+
+    EntryStore()
+    {
+        names = new NameDictionary();
+        rebuildIdTable();
+    }
+
+    private EntryStore(EntryStore source)
+    {
+        names = source.names.copy();
+        slotCount = source.slotCount;
+        removedCount = source.removedCount;
+        idMostSignificant = Arrays.copyOf(source.idMostSignificant, slotCount);
+        idLeastSignificant = Arrays.copyOf(source.idLeastSignificant, slotCount);
+        irregularIds = source.irregularIds != null ? Arrays.copyOf(source.irregularIds, slotCount) : null;
+        startMillis = Arrays.copyOf(source.startMillis, slotCount);
+        durationSeconds = Arrays.copyOf(source.durationSeconds, slotCount);
+        categoryIds = Arrays.copyOf(source.categoryIds, slotCount);
+        projectIds = Arrays.copyOf(source.projectIds, slotCount);
+        isRemoved = Arrays.copyOf(source.isRemoved, slotCount);
+        compact();
+    }
+
+    /**
+     * Returns an independent copy without removed slots that can be read on another thread.
+     */
+    EntryStore copy()
+    {
+        return new EntryStore(this);
+    }
+
+    /**
+     * Returns the number of live entries.
+     */
+    int size()
+    {
+        return slotCount - removedCount;
+    }
+
+    boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of slots including removed ones, the bound for iterating over slots.
+     */
+    int slotCount()
+    {
+        return slotCount;
+    }
+
+    boolean isRemoved(int slot)
+    {
+        return isRemoved[slot];
+    }
+
+    NameDictionary getNames()
+    {
+        return names;
+    }
+
+    void add(TimeEntry entry)
+    {
+        add(entry.getId(), entry.getProject(), entry.getCategory(), entry.getDurationSeconds(), entry.getStartTime() != null ? entry.getStartTime().getTime() : NO_START);
+    }
+
+    void add(String id, String project, String category, long duration, long start)
+    {
+        ensureCapacity(slotCount + 1);
+        UUID uuid = parseCanonicalUuid(id);
+        if (uuid != null)
+        {
+            idMostSignificant[slotCount] = uuid.getMostSignificantBits();
+            idLeastSignificant[slotCount] = uuid.getLeastSignificantBits();
+        }
+        else
+        {
+            if (irregularIds == null)
+            {
+                irregularIds = new String[idMostSignificant.length];
+            }
+            irregularIds[slotCount] = id;
+        }
+        addColumns(project, category, duration, start);
+    }
+
+    /**
+     * Appends an entry under a new random id, stored directly as bits without going through its string form.
+     */
+    void addWithNewId(String project, String category, long duration, long start)
+    {
+        ensureCapacity(slotCount + 1);
+        UUID uuid = UUID.randomUUID();
+        idMostSignificant[slotCount] = uuid.getMostSignificantBits();
+        idLeastSignificant[slotCount] = uuid.getLeastSignificantBits();
+        addColumns(project, category, duration, start);
+    }
+
+    private void addColumns(String project, String category, long duration, long start)
+    {
+        projectIds[slotCount] = names.getOrAdd(project);
+        categoryIds[slotCount] = names.getOrAdd(category);
+        durationSeconds[slotCount] = duration;
+        startMillis[slotCount] = start;
+        isRemoved[slotCount] = false;
+        insertIntoIdTable(slotCount);
+        slotCount++;
+    }
+
+    /**
+     * Appends all live rows of another store in order, translating its name ids with one dictionary lookup per distinct name.
+     */
+    void addAll(EntryStore source)
+    {
+        ensureCapacity(slotCount + source.size());
+        int[] nameIdMapping = mapNameIds(source);
+        for (int sourceSlot = 0; sourceSlot < source.slotCount; sourceSlot++)
+        {
+            if (!source.isRemoved[sourceSlot])
+            {
+                appendRow(source, sourceSlot, nameIdMapping);
+            }
+        }
+    }
+
+    /**
+     * Appends the live rows of another store that have no equal row here, comparing project, category, duration and start time
+     * through a hash table of the current rows. Each current row matches at most one row of the source, so an entry repeated
+     * in the source is only skipped as often as it already occurs here. Returns the number of appended rows.
+     */
+    int addAllMissing(EntryStore source)
+    {
+        int[] nameIdMapping = mapNameIds(source);
+        int[] contentBuckets = new int[getBucketCount(size())];  // Slot + 1 of the current rows by content, EMPTY_BUCKET marks free buckets
+        int mask = contentBuckets.length - 1;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (!isRemoved[slot])
+            {
+                int bucket = hashContent(projectIds[slot], categoryIds[slot], durationSeconds[slot], startMillis[slot]) & mask;
+                while (contentBuckets[bucket] != EMPTY_BUCKET)
+                {
+                    bucket = (bucket + 1) & mask;
+                }
+                contentBuckets[bucket] = slot + 1;
+            }
+        }
+        boolean[] isMatched = new boolean[slotCount];
+        boolean[] isMissing = new boolean[source.slotCount];
+        int missingCount = 0;
+        for (int sourceSlot = 0; sourceSlot < source.slotCount; sourceSlot++)
+        {
+            if (source.isRemoved[sourceSlot])
+            {
+                continue;
+            }
+            int projectId = nameIdMapping[source.projectIds[sourceSlot]];
+            int categoryId = nameIdMapping[source.categoryIds[sourceSlot]];
+            long duration = source.durationSeconds[sourceSlot];
+            long start = source.startMillis[sourceSlot];
+            int bucket = hashContent(projectId, categoryId, duration, start) & mask;
+            int matchedSlot = -1;
+            while (contentBuckets[bucket] != EMPTY_BUCKET && matchedSlot < 0)
+            {
+                int slot = contentBuckets[bucket] - 1;
+                if (!isMatched[slot] && projectIds[slot] == projectId && categoryIds[slot] == categoryId && durationSeconds[slot] == duration && startMillis[slot] == start)
+                {
+                    matchedSlot = slot;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            if (matchedSlot >= 0)
+            {
+                isMatched[matchedSlot] = true;
+            }
+            else
+            {
+                isMissing[sourceSlot] = true;
+                missingCount++;
+            }
+        }
+        ensureCapacity(slotCount + missingCount);
+        for (int sourceSlot = 0; sourceSlot < source.slotCount; sourceSlot++)
+        {
+            if (isMissing[sourceSlot])
+            {
+                appendRow(source, sourceSlot, nameIdMapping);
+            }
+        }
+        return missingCount;
+    }
+
+    /**
+     * Maps every name id of another store to the id of the same name here, adding names that are new.
+     */
+    private int[] mapNameIds(EntryStore source)
+    {
+        int[] nameIdMapping = new int[source.names.size()];
+        for (int sourceId = 0; sourceId < nameIdMapping.length; sourceId++)
+        {
+            nameIdMapping[sourceId] = names.getOrAdd(source.names.getName(sourceId));
+        }
+        return nameIdMapping;
+    }
+
+    /**
+     * Appends a row of another store with already translated name ids, the capacity must have been ensured.
+     */
+    private void appendRow(EntryStore source, int sourceSlot, int[] nameIdMapping)
+    {
+        idMostSignificant[slotCount] = source.idMostSignificant[sourceSlot];
+        idLeastSignificant[slotCount] = source.idLeastSignificant[sourceSlot];
+        if (source.irregularIds != null && source.irregularIds[sourceSlot] != null)
+        {
+            if (irregularIds == null)
+            {
+                irregularIds = new String[idMostSignificant.length];
+            }
+            irregularIds[slotCount] = source.irregularIds[sourceSlot];
+        }
+        projectIds[slotCount] = nameIdMapping[source.projectIds[sourceSlot]];
+        categoryIds[slotCount] = nameIdMapping[source.categoryIds[sourceSlot]];
+        durationSeconds[slotCount] = source.durationSeconds[sourceSlot];
+        startMillis[slotCount] = source.startMillis[sourceSlot];
+        isRemoved[slotCount] = false;
+        insertIntoIdTable(slotCount);
+        slotCount++;
+    }
+
+    /**
+     * Appends a row of another store, re-encoding its names.
+     */
+    void addRow(EntryStore source, int row)
+    {
+        add(source.getId(row), source.getProject(row), source.getCategory(row), source.getDurationSeconds(row), source.getStartMillis(row));
+    }
+
+    /**
+     * Marks the slot as removed, which invalidates slot numbers if it triggers a compaction.
+     */
+    void remove(int slot)
+    {
+        if (isRemoved[slot])
+        {
+            return;
+        }
+        isRemoved[slot] = true;
+        removedCount++;
+        if (removedTree != null)
+        {
+            for (int node = slot + 1; node < removedTree.length; node += node & -node)
+            {
+                removedTree[node]++;
+            }
+        }
+        if (removedCount >= MIN_REMOVED_TO_COMPACT && removedCount > slotCount / COMPACT_DIVISOR)
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Removes all rows of the category in a single compacting pass.
+     */
+    void removeCategory(int categoryId)
+    {
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (!isRemoved[slot] && categoryIds[slot] == categoryId)
+            {
+                isRemoved[slot] = true;
+                removedCount++;
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Moves the live rows together in insertion order and rebuilds the id table.
+     */
+    private void compact()
+    {
+        int kept = 0;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (!isRemoved[slot])
+            {
+                if (kept != slot)
+                {
+                    moveRow(slot, kept);
+                }
+                kept++;
+            }
+        }
+        if (irregularIds != null)
+        {
+            Arrays.fill(irregularIds, kept, slotCount, null);
+        }
+        Arrays.fill(isRemoved, kept, slotCount, false);
+        slotCount = kept;
+        removedCount = 0;
+        removedTree = null;
+        rebuildIdTable();
+    }
+
+    private void moveRow(int from, int to)
+    {
+        idMostSignificant[to] = idMostSignificant[from];
+        idLeastSignificant[to] = idLeastSignificant[from];
+        if (irregularIds != null)
+        {
+            irregularIds[to] = irregularIds[from];
+        }
+        startMillis[to] = startMillis[from];
+        durationSeconds[to] = durationSeconds[from];
+        categoryIds[to] = categoryIds[from];
+        projectIds[to] = projectIds[from];
+        isRemoved[to] = false;
+    }
+
+    /**
+     * Points all rows using fromId as category or project to toId.
+     */
+    void replaceNameId(int fromId, int toId, boolean isCategory)
+    {
+        int[] nameIds = isCategory ? categoryIds : projectIds;
+        for (int row = 0; row < slotCount; row++)
+        {
+            if (nameIds[row] == fromId)
+            {
+                nameIds[row] = toId;
+            }
+        }
+    }
+
+    /**
+     * Applies the renames in order by rewriting the name column, merging into names that already exist.
+     */
+    void renameInColumns(Map<String, String> renames, boolean isCategory)
+    {
+        for (Map.Entry<String, String> rename : renames.entrySet())
+        {
+            int fromId = names.getId(rename.getKey());
+            if (fromId != NameDictionary.NOT_FOUND)
+            {
+                replaceNameId(fromId, names.getOrAdd(rename.getValue()), isCategory);
+            }
+        }
+    }
+
+    void clear()
+    {
+        irregularIds = null;
+        Arrays.fill(isRemoved, 0, slotCount, false);
+        slotCount = 0;
+        removedCount = 0;
+        removedTree = null;
+        Arrays.fill(idBuckets, EMPTY_BUCKET);
+    }
+
+    /**
+     * Returns the live slot of the entry with the given id, or -1 if there is none.
+     */
+    int indexOf(String id)
+    {
+        UUID uuid = parseCanonicalUuid(id);
+        int hash = uuid != null ? hashUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) : spread(Objects.hashCode(id));
+        int mask = idBuckets.length - 1;
+        for (int bucket = hash & mask; idBuckets[bucket] != EMPTY_BUCKET; bucket = (bucket + 1) & mask)
+        {
+            int slot = idBuckets[bucket] - 1;
+            if (isRemoved[slot])
+            {
+                continue;
+            }
+            boolean isIrregular = irregularIds != null && irregularIds[slot] != null;
+            if (isIrregular ? id.equals(irregularIds[slot]) : uuid != null && idMostSignificant[slot] == uuid.getMostSignificantBits() && idLeastSignificant[slot] == uuid.getLeastSignificantBits())
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of the live entry at the given position in insertion order, or -1 if there is none.
+     * Descends the Fenwick tree of removed slots, so this takes logarithmic time while removed slots wait for compaction.
+     */
+    int slotOf(int position)
+    {
+        if (position < 0 || position >= size())
+        {
+            return -1;
+        }
+        if (removedCount == 0)
+        {
+            return position;
+        }
+        if (removedTree == null)
+        {
+            buildRemovedTree();
+        }
+        // Find the most slots whose live count stays below position + 1, the next slot is the one at the position:
+        int slot = 0;
+        int remaining = position + 1;
+        for (int step = Integer.highestOneBit(removedTree.length - 1); step > 0; step >>= 1)
+        {
+            int node = slot + step;
+            if (node < removedTree.length && step - removedTree[node] < remaining)
+            {
+                slot = node;
+                remaining -= step - removedTree[node];
+            }
+        }
+        return slot;
+    }
+
+    private void buildRemovedTree()
+    {
+        removedTree = new int[isRemoved.length + 1];
+        for (int node = 1; node < removedTree.length; node++)
+        {
+            removedTree[node] += isRemoved[node - 1] ? 1 : 0;
+            int parent = node + (node & -node);
+            if (parent < removedTree.length)
+            {
+                removedTree[parent] += removedTree[node];
+            }
+        }
+    }
+
+    String getId(int row)
+    {
+        if (irregularIds != null && irregularIds[row] != null)
+        {
+            return irregularIds[row];
+        }
+        return new UUID(idMostSignificant[row], idLeastSignificant[row]).toString();
+    }
+
+    String getProject(int row)
+    {
+        return names.getName(projectIds[row]);
+    }
+
+    String getCategory(int row)
+    {
+        return names.getName(categoryIds[row]);
+    }
+
+    int getProjectId(int row)
+    {
+        return projectIds[row];
+    }
+
+    int getCategoryId(int row)
+    {
+        return categoryIds[row];
+    }
+
+    long getDurationSeconds(int row)
+    {
+        return durationSeconds[row];
+    }
+
+    /**
+     * Returns the start millis of the row or NO_START.
+     */
+    long getStartMillis(int row)
+    {
+        return startMillis[row];
+    }
+
+    /**
+     * Materializes the row as a time entry object.
+     */
+    TimeEntry get(int row)
+    {
+        Date start = startMillis[row] != NO_START ? new Date(startMillis[row]) : null;
+        return new TimeEntry(getId(row), getProject(row), getCategory(row), durationSeconds[row], start);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= idMostSignificant.length)
+        {
+            return;
+        }
+        int newCapacity = Math.max(capacity, idMostSignificant.length * 2);
+        idMostSignificant = Arrays.copyOf(idMostSignificant, newCapacity);
+        idLeastSignificant = Arrays.copyOf(idLeastSignificant, newCapacity);
+        if (irregularIds != null)
+        {
+            irregularIds = Arrays.copyOf(irregularIds, newCapacity);
+        }
+        startMillis = Arrays.copyOf(startMillis, newCapacity);
+        durationSeconds = Arrays.copyOf(durationSeconds, newCapacity);
+        categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+        projectIds = Arrays.copyOf(projectIds, newCapacity);
+        isRemoved = Arrays.copyOf(isRemoved, newCapacity);
+        removedTree = null;
+        rebuildIdTable();
+    }
+
+    /**
+     * Sizes the id table to at least twice the slot capacity, keeping probe sequences short, and reinserts all live slots.
+     */
+    private void rebuildIdTable()
+    {
+        int bucketCount = getBucketCount(idMostSignificant.length);
+        if (idBuckets == null || idBuckets.length != bucketCount)
+        {
+            idBuckets = new int[bucketCount];
+        }
+        else
+        {
+            Arrays.fill(idBuckets, EMPTY_BUCKET);
+        }
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (!isRemoved[slot])
+            {
+                insertIntoIdTable(slot);
+            }
+        }
+    }
+
+    /**
+     * Returns the power of two bucket count of a hash table that stays at most half full with the given number of rows.
+     */
+    private static int getBucketCount(int capacity)
+    {
+        int bucketCount = 2;
+        while (bucketCount < capacity * 2)
+        {
+            bucketCount <<= 1;
+        }
+        return bucketCount;
+    }
+
+    private void insertIntoIdTable(int slot)
+    {
+        boolean isIrregular = irregularIds != null && irregularIds[slot] != null;
+        int hash = isIrregular ? spread(irregularIds[slot].hashCode()) : hashUuid(idMostSignificant[slot], idLeastSignificant[slot]);
+        int mask = idBuckets.length - 1;
+        int bucket = hash & mask;
+        while (idBuckets[bucket] != EMPTY_BUCKET)
+        {
+            bucket = (bucket + 1) & mask;
+        }
+        idBuckets[bucket] = slot + 1;
+    }
+
+    private static int hashUuid(long most, long least)
+    {
+        long bits = most ^ least;
+        return spread((int)(bits ^ (bits >>> Integer.SIZE)));
+    }
+
+    private static int hashContent(int projectId, int categoryId, long duration, long start)
+    {
+        long bits = ((start * HASH_MULTIPLIER + duration) * HASH_MULTIPLIER + projectId) * HASH_MULTIPLIER + categoryId;
+        return spread((int)(bits ^ (bits >>> Integer.SIZE)));
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> (Integer.SIZE / 2));
+    }
+
+    /**
+     * Returns the UUID if the id is its canonical string form, so it can be stored as two longs and restored exactly.
+     */
+    private static UUID parseCanonicalUuid(String id)
+    {
+        if (id == null)
+        {
+            return null;
+        }
+        try
+        {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+}
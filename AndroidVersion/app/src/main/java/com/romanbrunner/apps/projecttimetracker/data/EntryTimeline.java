@@ -0,0 +1,323 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import java.util.Arrays;
+
+/**
+ * Start-time ordered entries with Fenwick trees over their durations and live counts.
+ * Removing an entry only marks its slot, so removals take logarithmic time and removed slots are compacted away in bulk.
+ */
+class EntryTimeline
+{
+    // Constants:
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_REMOVED_TO_COMPACT = 64;
+    private static final int COMPACT_DIVISOR = 4;  // Compact once more than a quarter of the slots are removed
+
+    private long[] startMillis = new long[INITIAL_CAPACITY];  // Sorted, removed slots keep their start to stay in order
+    private long[] durationSeconds = new long[INITIAL_CAPACITY];
+    private boolean[] isRemoved = new boolean[INITIAL_CAPACITY];
+    private long[] secondsTree = new long[INITIAL_CAPACITY + 1];  // Fenwick tree over the durations of live slots, valid for nodes up to slotCount
+    private int[] countTree = new int[INITIAL_CAPACITY + 1];  // Fenwick tree over the live flags, valid for nodes up to slotCount
+    private int slotCount = 0;
+    private int removedCount = 0;
+
+    int size()
+    {
+        return slotCount - removedCount;
+    }
+
+    boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    long getEarliestStartMillis()
+    {
+        return startMillis[findLiveSlot(1)];
+    }
+
+    long getLatestStartMillis()
+    {
+        return startMillis[findLiveSlot(size())];
+    }
+
+    /**
+     * Inserts an entry, which takes logarithmic time for the usual chronological case and rebuilds the trees otherwise.
+     */
+    void insert(long start, long durationSeconds)
+    {
+        ensureCapacity(slotCount + 1);
+        int position = upperBound(start);
+        if (position == slotCount)
+        {
+            append(start, durationSeconds);
+            return;
+        }
+        System.arraycopy(startMillis, position, startMillis, position + 1, slotCount - position);
+        System.arraycopy(this.durationSeconds, position, this.durationSeconds, position + 1, slotCount - position);
+        System.arraycopy(isRemoved, position, isRemoved, position + 1, slotCount - position);
+        startMillis[position] = start;
+        this.durationSeconds[position] = durationSeconds;
+        isRemoved[position] = false;
+        slotCount++;
+        compact();  // Every later tree node changed, so drop the removed slots while rebuilding anyway
+    }
+
+    /**
+     * Appends a slot after all others, deriving its tree nodes from the prefix sums before it.
+     */
+    private void append(long start, long durationSeconds)
+    {
+        int node = slotCount + 1;
+        int firstCovered = node - (node & -node);  // The node covers slots (firstCovered, node]
+        startMillis[slotCount] = start;
+        this.durationSeconds[slotCount] = durationSeconds;
+        isRemoved[slotCount] = false;
+        secondsTree[node] = durationSeconds + prefixSeconds(slotCount) - prefixSeconds(firstCovered);
+        countTree[node] = 1 + prefixCount(slotCount) - prefixCount(firstCovered);
+        slotCount++;
+    }
+
+    /**
+     * Removes one entry with the given start and duration, returning whether it was found.
+     */
+    boolean remove(long start, long durationSeconds)
+    {
+        for (int position = lowerBound(start); position < slotCount && startMillis[position] == start; position++)
+        {
+            if (!isRemoved[position] && this.durationSeconds[position] == durationSeconds)
+            {
+                removeSlot(position);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeSlot(int position)
+    {
+        if (position == slotCount - 1)
+        {
+            slotCount--;  // The last slot is simply dropped, since nodes past slotCount are derived again on append
+            return;
+        }
+        isRemoved[position] = true;
+        removedCount++;
+        for (int node = position + 1; node <= slotCount; node += node & -node)
+        {
+            secondsTree[node] -= durationSeconds[position];
+            countTree[node]--;
+        }
+        if (removedCount >= MIN_REMOVED_TO_COMPACT && removedCount > slotCount / COMPACT_DIVISOR)
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Sums durations of entries starting within [rangeStart, rangeEnd] using two binary searches.
+     */
+    long sumInRange(long rangeStart, long rangeEnd)
+    {
+        if (rangeEnd < rangeStart)
+        {
+            return 0;
+        }
+        return prefixSeconds(upperBound(rangeEnd)) - prefixSeconds(lowerBound(rangeStart));
+    }
+
+    /**
+     * Returns the latest start strictly before the given time or Long.MIN_VALUE if there is none.
+     */
+    long findStartBefore(long time)
+    {
+        int liveBefore = prefixCount(lowerBound(time));
+        return liveBefore > 0 ? startMillis[findLiveSlot(liveBefore)] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the earliest start at or after the given time or Long.MAX_VALUE if there is none.
+     */
+    long findStartAtOrAfter(long time)
+    {
+        int liveBefore = prefixCount(lowerBound(time));
+        return liveBefore < size() ? startMillis[findLiveSlot(liveBefore + 1)] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Rebuilds the timeline from columns in one pass, sorting only if they are out of order.
+     */
+    void rebuild(long[] starts, long[] durations, int count)
+    {
+        slotCount = 0;
+        removedCount = 0;
+        ensureCapacity(count);
+        boolean isOrdered = true;
+        for (int i = 1; i < count && isOrdered; i++)
+        {
+            isOrdered = starts[i - 1] <= starts[i];
+        }
+        if (isOrdered)
+        {
+            System.arraycopy(starts, 0, startMillis, 0, count);
+            System.arraycopy(durations, 0, durationSeconds, 0, count);
+        }
+        else
+        {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+            for (int i = 0; i < count; i++)
+            {
+                startMillis[i] = starts[order[i]];
+                durationSeconds[i] = durations[order[i]];
+            }
+        }
+        Arrays.fill(isRemoved, 0, count, false);
+        slotCount = count;
+        buildTrees();
+    }
+
+    /**
+     * Moves the live slots together and rebuilds the trees in linear time.
+     */
+    private void compact()
+    {
+        int liveCount = 0;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (!isRemoved[slot])
+            {
+                startMillis[liveCount] = startMillis[slot];
+                durationSeconds[liveCount] = durationSeconds[slot];
+                isRemoved[liveCount++] = false;
+            }
+        }
+        slotCount = liveCount;
+        removedCount = 0;
+        buildTrees();
+    }
+
+    private void buildTrees()
+    {
+        for (int node = 1; node <= slotCount; node++)
+        {
+            secondsTree[node] = durationSeconds[node - 1];
+            countTree[node] = 1;
+        }
+        for (int node = 1; node <= slotCount; node++)
+        {
+            int parent = node + (node & -node);
+            if (parent <= slotCount)
+            {
+                secondsTree[parent] += secondsTree[node];
+                countTree[parent] += countTree[node];
+            }
+        }
+    }
+
+    /**
+     * Sums the durations of the live slots before the given slot index.
+     */
+    private long prefixSeconds(int slotEnd)
+    {
+        long sum = 0;
+        for (int node = slotEnd; node > 0; node -= node & -node)
+        {
+            sum += secondsTree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the live slots before the given slot index.
+     */
+    private int prefixCount(int slotEnd)
+    {
+        int count = 0;
+        for (int node = slotEnd; node > 0; node -= node & -node)
+        {
+            count += countTree[node];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the slot of the rank-th live entry, counted from 1, by descending the count tree in logarithmic time.
+     */
+    private int findLiveSlot(int rank)
+    {
+        int slot = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(slotCount); step > 0; step >>= 1)
+        {
+            int node = slot + step;
+            if (node <= slotCount && countTree[node] < remaining)
+            {
+                slot = node;
+                remaining -= countTree[node];
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Index of the first slot starting at or after the given time.
+     */
+    private int lowerBound(long time)
+    {
+        int low = 0;
+        int high = slotCount;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (startMillis[mid] < time)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first slot starting strictly after the given time.
+     */
+    private int upperBound(long time)
+    {
+        int low = 0;
+        int high = slotCount;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (startMillis[mid] <= time)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > startMillis.length)
+        {
+            int newCapacity = Math.max(capacity, startMillis.length * 2);
+            startMillis = Arrays.copyOf(startMillis, newCapacity);
+            durationSeconds = Arrays.copyOf(durationSeconds, newCapacity);
+            isRemoved = Arrays.copyOf(isRemoved, newCapacity);
+            secondsTree = Arrays.copyOf(secondsTree, newCapacity + 1);
+            countTree = Arrays.copyOf(countTree, newCapacity + 1);
+        }
+    }
+}
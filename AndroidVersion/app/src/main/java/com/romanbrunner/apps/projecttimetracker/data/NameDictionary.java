@@ -0,0 +1,72 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps each distinct project or category name to a stable int id.
+ */
+class NameDictionary
+{
+    static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    NameDictionary()
+    {
+    }
+
+    private NameDictionary(NameDictionary source)
+    {
+        idsByName.putAll(source.idsByName);
+        names.addAll(source.names);
+    }
+
+    /**
+     * Returns the id of the name, assigning the next free id to new names. Null is a regular name.
+     */
+    int getOrAdd(String name)
+    {
+        Integer id = idsByName.get(name);
+        if (id == null)
+        {
+            id = names.size();
+            idsByName.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Gives the id a new name that no other id uses, so everything keyed by the id follows the rename.
+     */
+    void rename(int id, String newName)
+    {
+        idsByName.remove(names.get(id));
+        idsByName.put(newName, id);
+        names.set(id, newName);
+    }
+
+    int getId(String name)
+    {
+        return idsByName.getOrDefault(name, NOT_FOUND);
+    }
+
+    String getName(int id)
+    {
+        return names.get(id);
+    }
+
+    int size()
+    {
+        return names.size();
+    }
+
+    NameDictionary copy()
+    {
+        return new NameDictionary(this);
+    }
+}
@@ -0,0 +1,180 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pipelined import of the text format: the calling thread cuts the input into line-aligned chunks, a worker pool parses them
+ * into separate entry stores while the next chunks are read, and the parsed chunks are merged in file order into one store.
+ */
+class TimeEntryImporter
+{
+    // Constants:
+    private static final int CHUNK_SIZE = 1 << 20;  // Chars per chunk, about 20000 lines
+    private static final int CHUNKS_IN_FLIGHT_PER_WORKER = 2;  // Keeps every worker busy while bounding the memory of unmerged chunks
+
+    /**
+     * Callback interface for import progress, invoked on the importing thread after each chunk.
+     */
+    interface ProgressListener
+    {
+        void onProgress(long bytesRead);
+    }
+
+    /**
+     * Counts the bytes consumed from the underlying stream for progress reporting.
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        long bytesRead = 0;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int value = super.read();
+            if (value != -1)
+            {
+                bytesRead++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int count = super.read(buffer, offset, length);
+            if (count > 0)
+            {
+                bytesRead += count;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Parses the whole stream, throwing InterruptedException without a result once the calling thread is interrupted.
+     */
+    static EntryStore importEntries(InputStream inputStream, ProgressListener progressListener) throws IOException, ParseException, InterruptedException
+    {
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        Deque<Future<EntryStore>> pendingChunks = new ArrayDeque<>();
+        EntryStore importedEntries = new EntryStore();
+        CountingInputStream countingStream = new CountingInputStream(inputStream);
+        try
+        {
+            Reader reader = new InputStreamReader(countingStream, StandardCharsets.UTF_8);
+            char[] buffer = new char[CHUNK_SIZE];
+            int length = 0;
+            int lineNumber = 1;
+            int read;
+            while ((read = reader.read(buffer, length, buffer.length - length)) != -1)
+            {
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+                length += read;
+                if (length < buffer.length)
+                {
+                    continue;
+                }
+                int chunkEnd = length;
+                while (chunkEnd > 0 && buffer[chunkEnd - 1] != '\n')
+                {
+                    chunkEnd--;
+                }
+                if (chunkEnd == 0)
+                {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);  // A single line does not fit the chunk
+                    continue;
+                }
+                // Hand the complete lines to a worker and carry the incomplete last line over to a fresh buffer:
+                char[] nextBuffer = new char[Math.max(CHUNK_SIZE, length - chunkEnd + 1)];
+                System.arraycopy(buffer, chunkEnd, nextBuffer, 0, length - chunkEnd);
+                pendingChunks.add(submitChunk(workers, buffer, chunkEnd, lineNumber));
+                lineNumber += countLines(buffer, chunkEnd);
+                buffer = nextBuffer;
+                length -= chunkEnd;
+                // Merge finished chunks in order, waiting for the oldest once too many are queued:
+                while (!pendingChunks.isEmpty() && (pendingChunks.peek().isDone() || pendingChunks.size() >= workerCount * CHUNKS_IN_FLIGHT_PER_WORKER))
+                {
+                    importedEntries.addAll(awaitChunk(pendingChunks.poll()));
+                }
+                progressListener.onProgress(countingStream.bytesRead);
+            }
+            pendingChunks.add(submitChunk(workers, buffer, length, lineNumber));
+            while (!pendingChunks.isEmpty())
+            {
+                importedEntries.addAll(awaitChunk(pendingChunks.poll()));
+            }
+            progressListener.onProgress(countingStream.bytesRead);
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+            return importedEntries;
+        }
+        finally
+        {
+            workers.shutdownNow();
+        }
+    }
+
+    private static Future<EntryStore> submitChunk(ExecutorService workers, char[] chars, int length, int firstLineNumber)
+    {
+        return workers.submit(() ->
+        {
+            EntryStore chunkEntries = new EntryStore();
+            new TimeEntryTextParser(chunkEntries::addWithNewId, firstLineNumber).parseLines(chars, 0, length);
+            return chunkEntries;
+        });
+    }
+
+    private static EntryStore awaitChunk(Future<EntryStore> pendingChunk) throws IOException, ParseException, InterruptedException
+    {
+        try
+        {
+            return pendingChunk.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof ParseException)
+            {
+                throw (ParseException)cause;
+            }
+            throw new IOException("Failed to parse entries", cause);
+        }
+    }
+
+    private static int countLines(char[] chars, int length)
+    {
+        int lineCount = 0;
+        for (int position = 0; position < length; position++)
+        {
+            if (chars[position] == '\n')
+            {
+                lineCount++;
+            }
+        }
+        return lineCount;
+    }
+}
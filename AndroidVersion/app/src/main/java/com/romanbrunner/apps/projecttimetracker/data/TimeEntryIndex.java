@@ -0,0 +1,258 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import com.romanbrunner.apps.projecttimetracker.util.EpochDays;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates over time entries that are kept in sync with every repository mutation, keyed by the store's name ids.
+ */
+class TimeEntryIndex
+{
+    private final UsageRanking categoryUsage = new UsageRanking();
+    private final UsageRanking projectUsage = new UsageRanking();
+    private final Map<Integer, Map<Integer, Integer>> projectCountsByCategory = new HashMap<>();
+    private final Map<Integer, EntryTimeline> categoryTimelines = new HashMap<>();
+    private final EntryTimeline activeTimeline = new EntryTimeline();  // Timed entries with a positive duration over all categories
+    private final DailyRollup dailyRollup = new DailyRollup();
+
+    /**
+     * Rebuilds all aggregates with primitive passes over the store's columns.
+     */
+    void rebuild(EntryStore store)
+    {
+        categoryUsage.clear();
+        projectUsage.clear();
+        projectCountsByCategory.clear();
+        categoryTimelines.clear();
+        dailyRollup.clear();
+        int count = store.slotCount();
+        int[] timedCounts = new int[store.getNames().size()];
+        int activeCount = 0;
+        for (int row = 0; row < count; row++)
+        {
+            if (store.isRemoved(row))
+            {
+                continue;
+            }
+            addUsage(store, row);
+            if (store.getStartMillis(row) != EntryStore.NO_START)
+            {
+                timedCounts[store.getCategoryId(row)]++;
+                addToRollup(store, row, store.getDurationSeconds(row));
+                if (isActive(store, row))
+                {
+                    activeCount++;
+                }
+            }
+        }
+        long[][] categoryStarts = new long[timedCounts.length][];
+        long[][] categoryDurations = new long[timedCounts.length][];
+        for (int categoryId = 0; categoryId < timedCounts.length; categoryId++)
+        {
+            if (timedCounts[categoryId] > 0)
+            {
+                categoryStarts[categoryId] = new long[timedCounts[categoryId]];
+                categoryDurations[categoryId] = new long[timedCounts[categoryId]];
+            }
+        }
+        int[] filled = new int[timedCounts.length];
+        long[] activeStarts = new long[activeCount];
+        long[] activeDurations = new long[activeCount];
+        int activeFilled = 0;
+        for (int row = 0; row < count; row++)
+        {
+            long start = store.getStartMillis(row);
+            if (store.isRemoved(row) || start == EntryStore.NO_START)
+            {
+                continue;
+            }
+            int categoryId = store.getCategoryId(row);
+            categoryStarts[categoryId][filled[categoryId]] = start;
+            categoryDurations[categoryId][filled[categoryId]++] = store.getDurationSeconds(row);
+            if (isActive(store, row))
+            {
+                activeStarts[activeFilled] = start;
+                activeDurations[activeFilled++] = store.getDurationSeconds(row);
+            }
+        }
+        for (int categoryId = 0; categoryId < timedCounts.length; categoryId++)
+        {
+            if (timedCounts[categoryId] > 0)
+            {
+                EntryTimeline timeline = new EntryTimeline();
+                timeline.rebuild(categoryStarts[categoryId], categoryDurations[categoryId], timedCounts[categoryId]);
+                categoryTimelines.put(categoryId, timeline);
+            }
+        }
+        activeTimeline.rebuild(activeStarts, activeDurations, activeCount);
+    }
+
+    private static boolean isActive(EntryStore store, int row)
+    {
+        return store.getStartMillis(row) != EntryStore.NO_START && store.getDurationSeconds(row) > 0;
+    }
+
+    void add(EntryStore store, int row)
+    {
+        addUsage(store, row);
+        long start = store.getStartMillis(row);
+        if (start != EntryStore.NO_START)
+        {
+            categoryTimelines.computeIfAbsent(store.getCategoryId(row), k -> new EntryTimeline()).insert(start, store.getDurationSeconds(row));
+            addToRollup(store, row, store.getDurationSeconds(row));
+        }
+        if (isActive(store, row))
+        {
+            activeTimeline.insert(start, store.getDurationSeconds(row));
+        }
+    }
+
+    void remove(EntryStore store, int row)
+    {
+        removeUsage(store, row);
+        int category = store.getCategoryId(row);
+        long start = store.getStartMillis(row);
+        EntryTimeline timeline = categoryTimelines.get(category);
+        if (timeline != null && start != EntryStore.NO_START)
+        {
+            timeline.remove(start, store.getDurationSeconds(row));
+            addToRollup(store, row, -store.getDurationSeconds(row));
+            if (timeline.isEmpty())
+            {
+                categoryTimelines.remove(category);
+                dailyRollup.removeCategory(category);
+            }
+        }
+        if (isActive(store, row))
+        {
+            activeTimeline.remove(start, store.getDurationSeconds(row));
+        }
+    }
+
+    private void addUsage(EntryStore store, int row)
+    {
+        int category = store.getCategoryId(row);
+        int project = store.getProjectId(row);
+        categoryUsage.add(category, store.getDurationSeconds(row), store.getStartMillis(row));
+        projectUsage.add(project, store.getDurationSeconds(row), store.getStartMillis(row));
+        projectCountsByCategory.computeIfAbsent(category, k -> new HashMap<>()).merge(project, 1, Integer::sum);
+    }
+
+    private void removeUsage(EntryStore store, int row)
+    {
+        int category = store.getCategoryId(row);
+        int project = store.getProjectId(row);
+        categoryUsage.remove(category, store.getDurationSeconds(row), store.getStartMillis(row));
+        projectUsage.remove(project, store.getDurationSeconds(row), store.getStartMillis(row));
+        Map<Integer, Integer> projectCounts = projectCountsByCategory.get(category);
+        if (projectCounts != null)
+        {
+            projectCounts.computeIfPresent(project, (k, count) -> count > 1 ? count - 1 : null);
+            if (projectCounts.isEmpty())
+            {
+                projectCountsByCategory.remove(category);
+            }
+        }
+    }
+
+    private void addToRollup(EntryStore store, int row, long deltaSeconds)
+    {
+        dailyRollup.add(store.getCategoryId(row), EpochDays.fromMillis(store.getStartMillis(row)), deltaSeconds);
+    }
+
+    long getCategoryTotal(int categoryId)
+    {
+        return categoryUsage.getTotalSeconds(categoryId);
+    }
+
+    long getProjectTotal(int projectId)
+    {
+        return projectUsage.getTotalSeconds(projectId);
+    }
+
+    UsageRanking getCategoryUsage()
+    {
+        return categoryUsage;
+    }
+
+    UsageRanking getProjectUsage()
+    {
+        return projectUsage;
+    }
+
+    /**
+     * Returns the ids of the distinct projects used with the given category.
+     */
+    Set<Integer> getProjectsForCategory(int categoryId)
+    {
+        Map<Integer, Integer> projectCounts = projectCountsByCategory.get(categoryId);
+        return projectCounts != null ? projectCounts.keySet() : Collections.emptySet();
+    }
+
+    /**
+     * Returns the category's timeline or null if it has no timed entries.
+     */
+    EntryTimeline getEntryTimeline(int categoryId)
+    {
+        return categoryTimelines.get(categoryId);
+    }
+
+    Set<Integer> getTimedCategories()
+    {
+        return categoryTimelines.keySet();
+    }
+
+    /**
+     * Sums a category's seconds over local epoch days [fromDay, toDayExclusive).
+     */
+    long getCategoryTotalForDays(int categoryId, long fromDay, long toDayExclusive)
+    {
+        return dailyRollup.sum(categoryId, fromDay, toDayExclusive);
+    }
+
+    /**
+     * Returns the earliest start over all timed entries or Long.MAX_VALUE if there are none.
+     */
+    long getEarliestStartMillis()
+    {
+        long earliest = Long.MAX_VALUE;
+        for (EntryTimeline timeline : categoryTimelines.values())
+        {
+            earliest = Math.min(earliest, timeline.getEarliestStartMillis());
+        }
+        return earliest;
+    }
+
+    /**
+     * Returns the latest start over all timed entries or Long.MIN_VALUE if there are none.
+     */
+    long getLatestStartMillis()
+    {
+        long latest = Long.MIN_VALUE;
+        for (EntryTimeline timeline : categoryTimelines.values())
+        {
+            latest = Math.max(latest, timeline.getLatestStartMillis());
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the latest start of an entry with positive duration before the given time, or Long.MIN_VALUE.
+     */
+    long findActiveStartBefore(long time)
+    {
+        return activeTimeline.findStartBefore(time);
+    }
+
+    /**
+     * Returns the earliest start of an entry with positive duration at or after the given time, or Long.MAX_VALUE.
+     */
+    long findActiveStartAtOrAfter(long time)
+    {
+        return activeTimeline.findStartAtOrAfter(time);
+    }
+}
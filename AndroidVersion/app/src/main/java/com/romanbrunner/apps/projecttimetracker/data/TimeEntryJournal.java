@@ -0,0 +1,542 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Append-only journal with snapshot compaction for time entry persistence.
+ * Each snapshot starts a new journal generation, so a journal that was already folded into the snapshot is never replayed again.
+ */
+class TimeEntryJournal
+{
+    // Constants:
+    private static final String SNAPSHOT_FILE_NAME = "time_entries_snapshot.json";
+    private static final String SNAPSHOT_TEMP_FILE_NAME = "time_entries_snapshot.tmp";
+    private static final String JOURNAL_FILE_NAME = "time_entries_journal.log";
+    private static final int COMPACTION_THRESHOLD = 1000;
+    private static final char RECORD_ADD = '+';
+    private static final char RECORD_REMOVE = '-';
+    private static final char RECORD_REMOVE_CATEGORY = '#';
+    private static final char RECORD_RENAME_CATEGORIES = '>';
+    private static final char RECORD_RENAME_PROJECTS = '=';
+    private static final char RECORD_GENERATION = '@';  // Header line of a journal, naming the snapshot generation its records apply to
+    private static final long TORN_GENERATION = -1;
+    private static final String FIELD_GENERATION = "generation";
+    private static final String FIELD_NAMES = "names";
+    private static final String FIELD_ENTRIES = "entries";
+
+    private final File snapshotFile;
+    private final File snapshotTempFile;
+    private final File journalFile;
+    private final Gson gson;
+    private final TimeEntryTypeAdapter entryAdapter = new TimeEntryTypeAdapter();
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Object appendLock;
+    private final Supplier<EntryStore> entryCopier;
+    private long lastTicket = 0;  // Numbers the queued writes in order, guarded by the append lock
+
+    // Only accessed on the I/O thread:
+    private boolean isGenerationKnown = false;
+    private long generation = 0;  // Generation of the current snapshot, journals written before generations existed count as 0
+    private long foldedTicket = 0;  // Queued writes up to this ticket are already part of the compacted snapshot
+    private int journalRecordCount = 0;
+    private boolean isJournalStarted = false;  // Whether the journal holds the records of the current generation
+    private boolean isJournalTerminated = false;  // Whether the journal is known to end with a line break
+
+    /**
+     * Every append and replacement must be made while holding the append lock, which compaction also holds while entryCopier copies the entries.
+     * The copier returns null while the entries are incomplete and must not be compacted yet.
+     */
+    TimeEntryJournal(File directory, Gson gson, Object appendLock, Supplier<EntryStore> entryCopier)
+    {
+        snapshotFile = new File(directory, SNAPSHOT_FILE_NAME);
+        snapshotTempFile = new File(directory, SNAPSHOT_TEMP_FILE_NAME);
+        journalFile = new File(directory, JOURNAL_FILE_NAME);
+        this.gson = gson;
+        this.appendLock = appendLock;
+        this.entryCopier = entryCopier;
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it, skipping unreadable records such as a torn trailing one.
+     * A journal of an older generation was left behind by a crash right after compaction and is skipped, since its records are already in the snapshot.
+     */
+    private List<TimeEntry> load()
+    {
+        readGenerationIfNeeded();
+        Map<String, TimeEntry> entriesById = new LinkedHashMap<>();
+        if (snapshotFile.exists())
+        {
+            try (JsonReader reader = new JsonReader(openReader(snapshotFile)))
+            {
+                readSnapshot(reader, entriesById);
+            }
+            catch (IOException | JsonParseException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        journalRecordCount = 0;
+        if (isJournalStarted)
+        {
+            try (BufferedReader reader = openReader(journalFile))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (!line.isEmpty() && !isGenerationHeader(line) && replayLine(entriesById, line))
+                    {
+                        journalRecordCount++;
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        return new ArrayList<>(entriesById.values());
+    }
+
+    /**
+     * Reads the snapshot's generation and whether the journal belongs to it, before the first load or write on the I/O thread.
+     * Writes can be queued ahead of loading, so they cannot rely on the load for this.
+     */
+    private void readGenerationIfNeeded()
+    {
+        if (isGenerationKnown)
+        {
+            return;
+        }
+        isGenerationKnown = true;
+        generation = readSnapshotGeneration();
+        long journalGeneration = readJournalGeneration();
+        isJournalStarted = journalFile.exists() && journalGeneration >= generation;  // Otherwise the next append starts a new journal of the current generation
+        if (isJournalStarted)
+        {
+            generation = journalGeneration;  // Only newer if the snapshot was lost
+        }
+    }
+
+    /**
+     * Returns the generation written first into the snapshot, or 0 for a snapshot from before generations existed.
+     */
+    private long readSnapshotGeneration()
+    {
+        if (!snapshotFile.exists())
+        {
+            return 0;
+        }
+        try (JsonReader reader = new JsonReader(openReader(snapshotFile)))
+        {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                return 0;
+            }
+            reader.beginObject();
+            return reader.hasNext() && reader.nextName().equals(FIELD_GENERATION) ? reader.nextLong() : 0;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the generation named by the journal's header line, 0 for a journal without header or TORN_GENERATION for an unreadable header.
+     */
+    private long readJournalGeneration()
+    {
+        if (!journalFile.exists())
+        {
+            return 0;
+        }
+        try (BufferedReader reader = openReader(journalFile))
+        {
+            String firstLine = reader.readLine();
+            return isGenerationHeader(firstLine) ? Long.parseLong(firstLine.substring(1)) : 0;
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            return TORN_GENERATION;  // Nothing was written after a torn header
+        }
+    }
+
+    private static boolean isGenerationHeader(String line)
+    {
+        return line != null && !line.isEmpty() && line.charAt(0) == RECORD_GENERATION;
+    }
+
+    /**
+     * Reads the snapshot object with its name table, or the former plain entry array with inline names.
+     */
+    private void readSnapshot(JsonReader reader, Map<String, TimeEntry> entriesById) throws IOException
+    {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY)
+        {
+            readSnapshotEntries(reader, null, entriesById);
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            switch (reader.nextName())
+            {
+                case FIELD_NAMES:
+                    reader.beginArray();
+                    while (reader.hasNext())
+                    {
+                        names.add(reader.peek() == JsonToken.NULL ? readNull(reader) : reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case FIELD_ENTRIES:
+                    readSnapshotEntries(reader, names, entriesById);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readSnapshotEntries(JsonReader reader, List<String> names, Map<String, TimeEntry> entriesById) throws IOException
+    {
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            TimeEntry entry = entryAdapter.readEntry(reader, names);
+            entriesById.put(entry.getId(), entry);
+        }
+        reader.endArray();
+    }
+
+    private static String readNull(JsonReader reader) throws IOException
+    {
+        reader.nextNull();
+        return null;
+    }
+
+    /**
+     * Loads on the I/O thread, so records appended meanwhile are written only after the journal was read.
+     */
+    void loadAsync(Consumer<List<TimeEntry>> onLoaded)
+    {
+        ioExecutor.execute(() -> onLoaded.accept(load()));
+    }
+
+    /**
+     * Writes the snapshot right away, only for use in the load callback where it still precedes every record appended while loading.
+     */
+    void writeInitialSnapshot(EntryStore entries) throws IOException
+    {
+        writeSnapshot(entries);
+    }
+
+    /**
+     * Replays one journal line, returning false if it could not be parsed so the records after it are still applied.
+     */
+    private boolean replayLine(Map<String, TimeEntry> entriesById, String line)
+    {
+        try
+        {
+            replayRecord(entriesById, line.charAt(0), line.substring(1));
+            return true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Applies one record; renames are not idempotent, which is why journals already folded into the snapshot are skipped by their generation.
+     */
+    private void replayRecord(Map<String, TimeEntry> entriesById, char recordType, String payload) throws IOException
+    {
+        switch (recordType)
+        {
+            case RECORD_ADD:
+                TimeEntry entry = entryAdapter.fromJson(payload);
+                entriesById.putIfAbsent(entry.getId(), entry);
+                break;
+            case RECORD_REMOVE:
+                entriesById.remove(gson.fromJson(payload, String.class));
+                break;
+            case RECORD_REMOVE_CATEGORY:
+                String category = gson.fromJson(payload, String.class);
+                entriesById.values().removeIf(e -> category.equals(e.getCategory()));
+                break;
+            case RECORD_RENAME_CATEGORIES:
+                for (Map.Entry<String, String> rename : readRenames(payload).entrySet())
+                {
+                    entriesById.values().stream().filter(e -> Objects.equals(rename.getKey(), e.getCategory())).forEach(e -> e.setCategory(rename.getValue()));
+                }
+                break;
+            case RECORD_RENAME_PROJECTS:
+                for (Map.Entry<String, String> rename : readRenames(payload).entrySet())
+                {
+                    entriesById.values().stream().filter(e -> Objects.equals(rename.getKey(), e.getProject())).forEach(e -> e.setProject(rename.getValue()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    void appendAdd(TimeEntry entry)
+    {
+        append(RECORD_ADD, entryAdapter.toJson(entry));
+    }
+
+    /**
+     * Records several added entries with a single write.
+     */
+    void appendAdds(List<TimeEntry> entries)
+    {
+        List<String> lines = new ArrayList<>(entries.size());
+        entries.forEach(entry -> lines.add(RECORD_ADD + entryAdapter.toJson(entry)));
+        append(lines);
+    }
+
+    void appendRemove(String entryId)
+    {
+        append(RECORD_REMOVE, gson.toJson(entryId));
+    }
+
+    void appendRemoveCategory(String category)
+    {
+        append(RECORD_REMOVE_CATEGORY, gson.toJson(category));
+    }
+
+    /**
+     * Records a batch of renames that are replayed in order.
+     */
+    void appendRenames(Map<String, String> renames, boolean isCategory)
+    {
+        append(isCategory ? RECORD_RENAME_CATEGORIES : RECORD_RENAME_PROJECTS, gson.toJson(renames));
+    }
+
+    private Map<String, String> readRenames(String payload)
+    {
+        Type type = new TypeToken<LinkedHashMap<String, String>>(){}.getType();
+        return gson.fromJson(payload, type);
+    }
+
+    /**
+     * Rewrites the snapshot from a copy of the current entries once the journal grew long, running on the I/O thread after an append.
+     * The copy already holds the changes of writes still queued behind this one, which are therefore dropped once the snapshot is stored.
+     */
+    private void compactIfNeeded()
+    {
+        if (journalRecordCount < COMPACTION_THRESHOLD)
+        {
+            return;
+        }
+        EntryStore entries;
+        long copiedTicket;
+        synchronized (appendLock)
+        {
+            entries = entryCopier.get();
+            copiedTicket = lastTicket;
+        }
+        if (entries == null)
+        {
+            return;
+        }
+        try
+        {
+            writeSnapshot(entries);
+            foldedTicket = copiedTicket;
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();  // The queued writes still go to the old journal
+        }
+    }
+
+    /**
+     * Replaces all persisted data with the given entries, which must not be modified afterwards, running onWritten on the I/O thread once stored.
+     */
+    void replaceAll(EntryStore entries, Runnable onWritten)
+    {
+        long ticket = ++lastTicket;
+        ioExecutor.execute(() ->
+        {
+            try
+            {
+                if (ticket > foldedTicket)
+                {
+                    writeSnapshot(entries);
+                }
+                if (onWritten != null)
+                {
+                    onWritten.run();
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void append(char recordType, String payload)
+    {
+        append(Collections.singletonList(recordType + payload));
+    }
+
+    private void append(List<String> lines)
+    {
+        long ticket = ++lastTicket;
+        ioExecutor.execute(() ->
+        {
+            if (ticket <= foldedTicket)
+            {
+                return;
+            }
+            readGenerationIfNeeded();
+            // A journal of an older generation is truncated instead of appended to:
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, isJournalStarted), StandardCharsets.UTF_8)))
+            {
+                if (!isJournalStarted)
+                {
+                    writer.write(RECORD_GENERATION + Long.toString(generation) + '\n');
+                }
+                // Close a torn record from an interrupted write, so the new records do not end up on its line:
+                else if (!isJournalTerminated && !endsWithLineBreak(journalFile))
+                {
+                    writer.write('\n');
+                }
+                isJournalTerminated = false;  // Stays unknown if writing fails midway
+                for (String line : lines)
+                {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+                isJournalStarted = true;
+                isJournalTerminated = true;
+                journalRecordCount += lines.size();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                return;
+            }
+            compactIfNeeded();
+        });
+    }
+
+    /**
+     * Makes a rename within the directory durable before depending on it, where the platform allows opening directories.
+     */
+    private static void syncDirectory(File directory)
+    {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();  // The synced snapshot data still protects against a truncated snapshot
+        }
+    }
+
+    private static boolean endsWithLineBreak(File file) throws IOException
+    {
+        if (file.length() == 0)
+        {
+            return true;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+        {
+            randomAccessFile.seek(file.length() - 1);
+            return randomAccessFile.read() == '\n';
+        }
+    }
+
+    /**
+     * Writes the snapshot of the next generation to a temporary file and only replaces the old snapshot and deletes the journal once it is durably stored.
+     * Throws only if the old snapshot is still in place.
+     */
+    private void writeSnapshot(EntryStore entries) throws IOException
+    {
+        readGenerationIfNeeded();
+        long nextGeneration = generation + 1;
+        FileOutputStream outputStream = new FileOutputStream(snapshotTempFile);
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))))
+        {
+            // Names are written once in a table that entries refer to by index:
+            writer.beginObject();
+            writer.name(FIELD_GENERATION).value(nextGeneration);
+            writer.name(FIELD_NAMES).beginArray();
+            NameDictionary names = entries.getNames();
+            for (int nameId = 0; nameId < names.size(); nameId++)
+            {
+                writer.value(names.getName(nameId));
+            }
+            writer.endArray();
+            writer.name(FIELD_ENTRIES).beginArray();
+            for (int slot = 0; slot < entries.slotCount(); slot++)
+            {
+                if (!entries.isRemoved(slot))
+                {
+                    entryAdapter.writeEncodedEntry(writer, entries.getId(slot), entries.getProjectId(slot), entries.getCategoryId(slot), entries.getDurationSeconds(slot), entries.getStartMillis(slot));
+                }
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.flush();
+            outputStream.getFD().sync();
+        }
+        if (!snapshotTempFile.renameTo(snapshotFile))
+        {
+            throw new IOException("Could not replace snapshot file");
+        }
+        syncDirectory(snapshotFile.getParentFile());
+        generation = nextGeneration;
+        journalRecordCount = 0;
+        isJournalStarted = false;
+        journalFile.delete();  // If this fails, the journal is skipped as an older generation and truncated by the next append
+    }
+
+    private static BufferedReader openReader(File file) throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+}
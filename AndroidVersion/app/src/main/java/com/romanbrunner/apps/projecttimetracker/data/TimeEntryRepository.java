@@ -3,15 +3,15 @@ package com.romanbrunner.apps.projecttimetracker.data;
 import android.content.Context;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
 import com.romanbrunner.apps.projecttimetracker.util.PreferencesManager;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Type;
@@ -19,130 +19,450 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 /**
- * Repository for time entry data persistence.
+ * Repository for time entry data persistence, safe to query from background threads.
+ * There is one instance per process, so the journal and its I/O thread outlive activity recreations instead of racing a second copy.
  */
 public class TimeEntryRepository
 {
     // Constants:
-    private static final String FIELD_SEPARATOR = " --- ";
     private static final String PYTHON_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
     public static final String DEFAULT_PROJECT = "ProjectTimeTracker";
     public static final String DEFAULT_CATEGORY = "Programming";
+    private static final int MAX_INCREMENTAL_MERGE = 64;  // Larger merges rebuild the index once, since older rows would shift the timelines on every insert
+
+    /**
+     * Callback interface for entry data changes, invoked on the thread that made the change.
+     */
+    public interface OnDataChangedListener
+    {
+        void onDataChanged();
+    }
+
+    public enum ImportMode
+    {
+        REPLACE,  // Replaces all current entries with the imported ones
+        MERGE  // Adds the imported entries that are not present yet, keeping entries only recorded here
+    }
+
+    /**
+     * Callback interface for a background import, invoked on the importing thread.
+     */
+    public interface ImportListener
+    {
+        void onProgress(long bytesRead);
+
+        void onImported(int importedCount);
+
+        void onImportFailed(Exception exception);
+    }
+
+    private static TimeEntryRepository instance;
 
     private final PreferencesManager preferencesManager;
     private final Gson gson;
-    private List<TimeEntry> entries;
+    private final TimeEntryJournal journal;
+    private final List<OnDataChangedListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService importExecutor = Executors.newSingleThreadExecutor();  // Lives as long as the process like the instance
+    private TimeEntryIndex entryIndex = new TimeEntryIndex();
+    private EntryStore entries = new EntryStore();
 
-    public TimeEntryRepository(Context context)
+    // Loading state, mutations made before the stored entries are published only touch the in-memory entries:
+    private boolean isLoadStarted = false;
+    private boolean isLoaded = false;
+    private final List<Runnable> loadedCallbacks = new ArrayList<>();  // Run once the stored entries are published
+    private boolean isReplacedWhileLoading = false;
+    private final List<Consumer<EntryStore>> changesWhileLoading = new ArrayList<>();  // Bulk changes to replay on the stored entries
+    private Map<String, List<String>> nameSnapshot;  // Category and project names from the previous session, used until loaded
+
+    public static synchronized TimeEntryRepository getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new TimeEntryRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TimeEntryRepository(Context context)
     {
         preferencesManager = new PreferencesManager(context);
-        gson = new Gson();
-        loadEntries();
+        gson = new GsonBuilder().registerTypeAdapter(TimeEntry.class, new TimeEntryTypeAdapter()).create();
+        journal = new TimeEntryJournal(context.getFilesDir(), gson, this, this::copyLoadedEntries);
+        nameSnapshot = loadNameSnapshot();
+    }
+
+    /**
+     * Loads stored entries in the background on the first call and runs onLoaded on the loading thread once they are published.
+     * If they are already published, onLoaded runs right away on the calling thread.
+     */
+    public void loadAsync(Runnable onLoaded)
+    {
+        boolean isAlreadyLoaded;
+        synchronized (this)
+        {
+            isAlreadyLoaded = isLoaded;
+            if (!isLoaded)
+            {
+                loadedCallbacks.add(onLoaded);
+                if (isLoadStarted)
+                {
+                    return;
+                }
+                isLoadStarted = true;
+            }
+        }
+        if (isAlreadyLoaded)
+        {
+            onLoaded.run();
+            return;
+        }
+        journal.loadAsync(loadedEntries ->
+        {
+            EntryStore storedEntries = toEntryStore(migrateLegacyEntries(loadedEntries));
+            TimeEntryIndex storedIndex = new TimeEntryIndex();
+            storedIndex.rebuild(storedEntries);
+            publishLoadedEntries(storedEntries, storedIndex);
+            notifyDataChanged();
+            List<Runnable> callbacks;
+            synchronized (this)
+            {
+                callbacks = new ArrayList<>(loadedCallbacks);
+                loadedCallbacks.clear();
+            }
+            callbacks.forEach(Runnable::run);
+        });
     }
 
-    private void loadEntries()
+    /**
+     * Merges the stored entries with any made before loading finished and makes them visible.
+     */
+    private synchronized void publishLoadedEntries(EntryStore storedEntries, TimeEntryIndex storedIndex)
+    {
+        isLoaded = true;
+        if (!isReplacedWhileLoading)
+        {
+            changesWhileLoading.forEach(change -> change.accept(storedEntries));
+            if (!changesWhileLoading.isEmpty())
+            {
+                storedIndex.rebuild(storedEntries);
+            }
+            for (int slot = 0; slot < entries.slotCount(); slot++)
+            {
+                // Skip entries whose journal record was already written when loading started:
+                if (!entries.isRemoved(slot) && storedEntries.indexOf(entries.getId(slot)) < 0)
+                {
+                    storedEntries.addRow(entries, slot);
+                    storedIndex.add(storedEntries, storedEntries.slotCount() - 1);
+                }
+            }
+            entries = storedEntries;
+            entryIndex = storedIndex;
+        }
+        changesWhileLoading.clear();
+        nameSnapshot = null;
+        saveNameSnapshot();
+        notifyAll();  // Wakes imports waiting to merge
+    }
+
+    /**
+     * Moves entries from the former SharedPreferences JSON storage into the journal, running on the loading I/O thread.
+     * Returns them ahead of the loaded entries; unreadable JSON is left in place and loading goes on without it.
+     */
+    private List<TimeEntry> migrateLegacyEntries(List<TimeEntry> loadedEntries)
     {
         String json = preferencesManager.getTimeEntriesJson();
-        if (json != null)
+        if (json == null)
+        {
+            return loadedEntries;
+        }
+        List<TimeEntry> migratedEntries = new ArrayList<>();
+        try
         {
             Type type = new TypeToken<ArrayList<TimeEntry>>(){}.getType();
-            entries = gson.fromJson(json, type);
-            if (entries == null)
+            List<TimeEntry> legacyEntries = gson.fromJson(json, type);
+            if (legacyEntries != null)
             {
-                entries = new ArrayList<>();
+                migratedEntries.addAll(legacyEntries);
             }
         }
-        else
+        catch (JsonParseException e)
+        {
+            e.printStackTrace();
+            return loadedEntries;
+        }
+        Set<String> legacyIds = new HashSet<>();
+        migratedEntries.forEach(entry -> legacyIds.add(entry.getId()));
+        loadedEntries.stream().filter(entry -> !legacyIds.contains(entry.getId())).forEach(migratedEntries::add);
+        try
+        {
+            // Written before the queued journal writes, which then apply on top instead of being replaced:
+            journal.writeInitialSnapshot(toEntryStore(migratedEntries));
+            preferencesManager.removeTimeEntriesJson();
+        }
+        catch (IOException e)
         {
-            entries = new ArrayList<>();
+            e.printStackTrace();  // The JSON stays for another attempt at the next start
         }
+        return migratedEntries;
     }
 
-    private void saveEntries()
+    private static EntryStore toEntryStore(List<TimeEntry> entryList)
     {
-        String json = gson.toJson(entries);
-        preferencesManager.setTimeEntriesJson(json);
+        EntryStore store = new EntryStore();
+        entryList.forEach(store::add);
+        return store;
     }
 
-    public List<TimeEntry> getAllEntries()
+    private Map<String, List<String>> loadNameSnapshot()
     {
-        return new ArrayList<>(entries);
+        String json = preferencesManager.getEntryNamesJson();
+        Map<String, List<String>> names = null;
+        if (json != null)
+        {
+            Type type = new TypeToken<HashMap<String, List<String>>>(){}.getType();
+            names = gson.fromJson(json, type);
+        }
+        return names != null ? names : new HashMap<>();
+    }
+
+    /**
+     * Persists the category and project names so the next session can offer them before entries are loaded.
+     */
+    private void saveNameSnapshot()
+    {
+        Map<String, List<String>> names = new HashMap<>();
+        NameDictionary dictionary = entries.getNames();
+        for (int categoryId : entryIndex.getCategoryUsage().getNameIds())
+        {
+            String category = dictionary.getName(categoryId);
+            if (category != null)
+            {
+                List<String> projects = new ArrayList<>();
+                entryIndex.getProjectsForCategory(categoryId).forEach(projectId -> projects.add(dictionary.getName(projectId)));
+                names.put(category, projects);
+            }
+        }
+        preferencesManager.setEntryNamesJson(gson.toJson(names));
     }
 
-    public void addEntry(TimeEntry entry)
+    /**
+     * Copies the entries for a journal compaction on the I/O thread, which holds the lock of this instance meanwhile.
+     */
+    private EntryStore copyLoadedEntries()
     {
+        return isLoaded ? entries.copy() : null;  // Compacting before loading finished would drop the stored entries from the snapshot
+    }
+
+    public void addOnDataChangedListener(OnDataChangedListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeOnDataChangedListener(OnDataChangedListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    private void notifyDataChanged()
+    {
+        listeners.forEach(OnDataChangedListener::onDataChanged);
+    }
+
+    /**
+     * Materializes at most limit entries in newest-first order, skipping the newest offset entries.
+     */
+    public synchronized List<TimeEntry> getEntriesNewestFirst(int offset, int limit)
+    {
+        List<TimeEntry> page = new ArrayList<>(Math.max(0, Math.min(limit, entries.size() - offset)));
+        for (int slot = entries.slotOf(entries.size() - 1 - offset); slot >= 0 && page.size() < limit; slot--)
+        {
+            if (!entries.isRemoved(slot))
+            {
+                page.add(entries.get(slot));
+            }
+        }
+        return page;
+    }
+
+    public synchronized void addEntry(TimeEntry entry)
+    {
+        boolean isNewName = !entryIndex.getProjectsForCategory(getNameId(entry.getCategory())).contains(getNameId(entry.getProject()));
         entries.add(entry);
-        saveEntries();
+        entryIndex.add(entries, entries.slotCount() - 1);
+        if (isLoaded && isNewName)
+        {
+            saveNameSnapshot();
+        }
+        journal.appendAdd(entry);
+        notifyDataChanged();
     }
 
-    public void removeEntry(String entryId)
+    /**
+     * Removes the entry through the id table, leaving a removed slot behind instead of shifting later entries.
+     */
+    public synchronized void removeEntry(String entryId)
     {
-        entries.removeIf(e -> e.getId().equals(entryId));
-        saveEntries();
+        int slot = entries.indexOf(entryId);
+        if (slot >= 0)
+        {
+            entryIndex.remove(entries, slot);
+            entries.remove(slot);
+            journal.appendRemove(entryId);
+            notifyDataChanged();
+        }
+    }
+
+    public synchronized void removeEntriesByCategory(String category)
+    {
+        if (!isLoaded)
+        {
+            changesWhileLoading.add(store -> removeCategoryRows(store, category));
+        }
+        boolean removedAny = false;
+        int categoryId = entries.getNames().getId(category);
+        if (categoryId != NameDictionary.NOT_FOUND)
+        {
+            for (int slot = 0; slot < entries.slotCount(); slot++)
+            {
+                if (!entries.isRemoved(slot) && entries.getCategoryId(slot) == categoryId)
+                {
+                    entryIndex.remove(entries, slot);
+                    removedAny = true;
+                }
+            }
+            entries.removeCategory(categoryId);
+        }
+        if (removedAny || !isLoaded)
+        {
+            journal.appendRemoveCategory(category);
+            notifyDataChanged();
+        }
     }
 
-    public void removeEntry(int index)
+    private static void removeCategoryRows(EntryStore store, String category)
     {
-        if (index >= 0 && index < entries.size())
+        int categoryId = store.getNames().getId(category);
+        if (categoryId != NameDictionary.NOT_FOUND)
         {
-            entries.remove(index);
-            saveEntries();
+            store.removeCategory(categoryId);
         }
     }
 
-    public void removeEntriesByCategory(String category)
+    /**
+     * Renames categories in order as one batch, merging a category into another when the new name is already used.
+     */
+    public synchronized void renameCategories(Map<String, String> renames)
     {
-        entries.removeIf(e -> category.equals(e.getCategory()));
-        saveEntries();
+        renameNames(renames, true);
     }
 
-    public int getEntryCount()
+    /**
+     * Renames projects in order as one batch, merging a project into another when the new name is already used.
+     */
+    public synchronized void renameProjects(Map<String, String> renames)
     {
-        return entries.size();
+        renameNames(renames, false);
     }
 
-    public TimeEntry getEntry(int index)
+    private void renameNames(Map<String, String> renames, boolean isCategory)
     {
-        if (index >= 0 && index < entries.size())
+        NameDictionary names = entries.getNames();
+        UsageRanking otherRoleUsage = isCategory ? entryIndex.getProjectUsage() : entryIndex.getCategoryUsage();
+        boolean needsRebuild = false;
+        for (Map.Entry<String, String> rename : renames.entrySet())
         {
-            return entries.get(index);
+            int fromId = names.getId(rename.getKey());
+            if (fromId == NameDictionary.NOT_FOUND || Objects.equals(rename.getKey(), rename.getValue()))
+            {
+                continue;
+            }
+            if (names.getId(rename.getValue()) == NameDictionary.NOT_FOUND && !otherRoleUsage.contains(fromId))
+            {
+                // Aggregates are keyed by id, so renaming the dictionary slot is enough:
+                names.rename(fromId, rename.getValue());
+            }
+            else
+            {
+                entries.replaceNameId(fromId, names.getOrAdd(rename.getValue()), isCategory);
+                needsRebuild = true;
+            }
+        }
+        if (needsRebuild)
+        {
+            entryIndex.rebuild(entries);
+        }
+        if (!isLoaded)
+        {
+            Map<String, String> pendingRenames = new LinkedHashMap<>(renames);
+            changesWhileLoading.add(store -> store.renameInColumns(pendingRenames, isCategory));
         }
-        return null;
+        journal.appendRenames(renames, isCategory);
+        if (isLoaded)
+        {
+            saveNameSnapshot();
+        }
+        notifyDataChanged();
+    }
+
+    /**
+     * Rebuilds the aggregates keyed by local epoch day after the time zone changed.
+     */
+    public synchronized void onTimeZoneChanged()
+    {
+        entryIndex.rebuild(entries);
+        notifyDataChanged();
     }
 
-    public Set<String> getAllValuesForField(java.util.function.Function<TimeEntry, String> fieldExtractor, String defaultValue)
+    public synchronized int getEntryCount()
     {
-        Set<String> values = new HashSet<>();
-        values.add(defaultValue);
-        for (TimeEntry entry : entries)
+        return entries.size();
+    }
+
+    public synchronized Set<String> getCategories()
+    {
+        Set<String> categories = new HashSet<>();
+        categories.add(DEFAULT_CATEGORY);
+        if (nameSnapshot != null)
+        {
+            categories.addAll(nameSnapshot.keySet());
+        }
+        for (int categoryId : entryIndex.getCategoryUsage().getNameIds())
         {
-            String value = fieldExtractor.apply(entry);
-            if (value != null && !value.isEmpty())
+            String category = entries.getNames().getName(categoryId);
+            if (category != null && !category.isEmpty())
             {
-                values.add(value);
+                categories.add(category);
             }
         }
-        return values;
+        return categories;
     }
 
     /**
      * Gets projects filtered by category.
      */
-    public Set<String> getProjectsForCategory(String category)
+    public synchronized Set<String> getProjectsForCategory(String category)
     {
         Set<String> projects = new HashSet<>();
-        for (TimeEntry entry : entries)
+        entryIndex.getProjectsForCategory(getNameId(category)).forEach(projectId -> projects.add(entries.getNames().getName(projectId)));
+        if (nameSnapshot != null && nameSnapshot.containsKey(category))
         {
-            if (category.equals(entry.getCategory()))
-            {
-                projects.add(entry.getProject());
-            }
+            projects.addAll(nameSnapshot.get(category));
         }
         // Only add default if no projects found for this category:
         if (projects.isEmpty())
@@ -152,91 +472,184 @@ public class TimeEntryRepository
         return projects;
     }
 
-    public long getTotalDurationForField(String value, java.util.function.Function<TimeEntry, String> fieldExtractor)
+    /**
+     * Sorts category or project names by descending total duration.
+     */
+    public synchronized void sortByTotalDuration(List<String> names, boolean isCategory)
     {
-        long total = 0;
-        for (TimeEntry entry : entries)
-        {
-            if (value.equals(fieldExtractor.apply(entry)))
-            {
-                total += entry.getDurationSeconds();
-            }
-        }
-        return total;
+        (isCategory ? entryIndex.getCategoryUsage() : entryIndex.getProjectUsage()).sortByTotalSeconds(names, entries.getNames());
+    }
+
+    /**
+     * Sorts category or project names by descending latest entry start.
+     */
+    public synchronized void sortByLastUsed(List<String> names, boolean isCategory)
+    {
+        IntUnaryOperator nameIdOfRow = isCategory ? entries::getCategoryId : entries::getProjectId;
+        (isCategory ? entryIndex.getCategoryUsage() : entryIndex.getProjectUsage()).sortByLastUsed(names, entries, nameIdOfRow);
+    }
+
+    /**
+     * Returns the dictionary id of a project or category name, or NameDictionary.NOT_FOUND if no entry ever used it.
+     */
+    private int getNameId(String name)
+    {
+        return entries.getNames().getId(name);
+    }
+
+    public synchronized long getTotalDurationForCategory(String category)
+    {
+        return entryIndex.getCategoryTotal(getNameId(category));
+    }
+
+    public synchronized long getTotalDurationForProject(String project)
+    {
+        return entryIndex.getProjectTotal(getNameId(project));
     }
 
     /**
      * Calculates total duration for a category, only counting entries within the given date range.
      */
-    public long getTotalDurationForCategoryInRange(String category, Date rangeStart, Date rangeEnd)
+    public synchronized long getTotalDurationForCategoryInRange(String category, Date rangeStart, Date rangeEnd)
     {
-        long total = 0;
-        for (TimeEntry entry : entries)
+        EntryTimeline timeline = entryIndex.getEntryTimeline(getNameId(category));
+        if (timeline == null)
         {
-            if (category.equals(entry.getCategory()) && entry.getStartTime() != null)
-            {
-                if (!entry.getStartTime().before(rangeStart) && !entry.getStartTime().after(rangeEnd))
-                {
-                    total += entry.getDurationSeconds();
-                }
-            }
+            return 0;
         }
-        return total;
+        return timeline.sumInRange(rangeStart.getTime(), rangeEnd.getTime());
     }
 
     /**
      * Gets the earliest start date for entries in a category.
      */
-    public Date getEarliestStartDateForCategory(String category)
+    public synchronized Date getEarliestStartDateForCategory(String category)
     {
-        Date earliest = new Date();
-        for (TimeEntry entry : entries)
+        EntryTimeline timeline = entryIndex.getEntryTimeline(getNameId(category));
+        long nowMillis = System.currentTimeMillis();
+        if (timeline == null || timeline.getEarliestStartMillis() >= nowMillis)
         {
-            if (category.equals(entry.getCategory()) && entry.getStartTime() != null)
-            {
-                if (entry.getStartTime().before(earliest))
-                {
-                    earliest = entry.getStartTime();
-                }
-            }
+            return new Date(nowMillis);
+        }
+        return new Date(timeline.getEarliestStartMillis());
+    }
+
+    /**
+     * Pool statistics of one category.
+     */
+    public static class CategoryStatistics
+    {
+        public static final CategoryStatistics EMPTY = new CategoryStatistics(0, 0, Long.MAX_VALUE);
+
+        public final long totalSeconds;
+        public final long usedSeconds;  // Within the requested range, or the total for an open range
+        public final long earliestStartMillis;  // Long.MAX_VALUE if the category has no timed entries
+
+        public CategoryStatistics(long totalSeconds, long usedSeconds, long earliestStartMillis)
+        {
+            this.totalSeconds = totalSeconds;
+            this.usedSeconds = usedSeconds;
+            this.earliestStartMillis = earliestStartMillis;
         }
-        return earliest;
     }
 
     /**
-     * Gets the latest start date for entries matching a given field value.
+     * Collects the statistics of every category with entries in one call from the maintained aggregates.
+     * Passing null range bounds counts the whole history as used.
      */
-    public Date getLatestStartDateForField(String value, java.util.function.Function<TimeEntry, String> fieldExtractor)
+    public synchronized Map<String, CategoryStatistics> getCategoryStatistics(Date rangeStart, Date rangeEnd)
     {
-        Date latest = new Date(0);
-        for (TimeEntry entry : entries)
+        Set<Integer> categoryIds = entryIndex.getCategoryUsage().getNameIds();
+        Map<String, CategoryStatistics> statistics = new HashMap<>(categoryIds.size() * 2);
+        for (int categoryId : categoryIds)
         {
-            if (value.equals(fieldExtractor.apply(entry)) && entry.getStartTime() != null)
+            long totalSeconds = entryIndex.getCategoryTotal(categoryId);
+            EntryTimeline timeline = entryIndex.getEntryTimeline(categoryId);
+            long usedSeconds = totalSeconds;
+            if (rangeStart != null && rangeEnd != null)
             {
-                if (entry.getStartTime().after(latest))
-                {
-                    latest = entry.getStartTime();
-                }
+                usedSeconds = timeline != null ? timeline.sumInRange(rangeStart.getTime(), rangeEnd.getTime()) : 0;
             }
+            long earliestStartMillis = timeline != null ? timeline.getEarliestStartMillis() : Long.MAX_VALUE;
+            statistics.put(entries.getNames().getName(categoryId), new CategoryStatistics(totalSeconds, usedSeconds, earliestStartMillis));
         }
-        return latest;
+        return statistics;
+    }
+
+    /**
+     * Gets all categories that have entries with a start time.
+     */
+    public synchronized Set<String> getTimedCategories()
+    {
+        Set<String> categories = new HashSet<>();
+        entryIndex.getTimedCategories().forEach(categoryId -> categories.add(entries.getNames().getName(categoryId)));
+        return categories;
     }
 
     /**
-     * Exports entries to a text file in Python format.
+     * Calculates total duration for a category over the local epoch days [fromEpochDay, toEpochDayExclusive).
      */
-    public void exportToTextFile(OutputStream outputStream) throws IOException
+    public synchronized long getTotalDurationForCategoryInDays(String category, long fromEpochDay, long toEpochDayExclusive)
+    {
+        return entryIndex.getCategoryTotalForDays(getNameId(category), fromEpochDay, toEpochDayExclusive);
+    }
+
+    /**
+     * Gets the earliest start date over all entries, or null if no entry has a start time.
+     */
+    public synchronized Date getEarliestStartDate()
+    {
+        long earliest = entryIndex.getEarliestStartMillis();
+        return earliest == Long.MAX_VALUE ? null : new Date(earliest);
+    }
+
+    /**
+     * Gets the latest start date over all entries, or null if no entry has a start time.
+     */
+    public synchronized Date getLatestStartDate()
+    {
+        long latest = entryIndex.getLatestStartMillis();
+        return latest == Long.MIN_VALUE ? null : new Date(latest);
+    }
+
+    /**
+     * Finds the latest start of an entry with positive duration before the given time, or null if there is none.
+     */
+    public synchronized Date findPreviousEntryStart(Date before)
+    {
+        long start = entryIndex.findActiveStartBefore(before.getTime());
+        return start == Long.MIN_VALUE ? null : new Date(start);
+    }
+
+    /**
+     * Finds the earliest start of an entry with positive duration at or after the given time, or null if there is none.
+     */
+    public synchronized Date findNextEntryStart(Date from)
+    {
+        long start = entryIndex.findActiveStartAtOrAfter(from.getTime());
+        return start == Long.MAX_VALUE ? null : new Date(start);
+    }
+
+    /**
+     * Exports entries to a text file in Python format, leaving out entries without a start time.
+     */
+    public synchronized void exportToTextFile(OutputStream outputStream) throws IOException
     {
         SimpleDateFormat dateFormat = new SimpleDateFormat(PYTHON_DATE_FORMAT, Locale.US);
         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream));
         try
         {
-            for (TimeEntry entry : entries)
+            for (int slot = 0; slot < entries.slotCount(); slot++)
             {
-                String line = entry.getProject() + FIELD_SEPARATOR +
-                             entry.getCategory() + FIELD_SEPARATOR +
-                             entry.getDurationSeconds() + FIELD_SEPARATOR +
-                             dateFormat.format(entry.getStartTime());
+                // The text format requires a start time, so entries without one are left out:
+                if (entries.isRemoved(slot) || entries.getStartMillis(slot) == EntryStore.NO_START)
+                {
+                    continue;
+                }
+                String line = entries.getProject(slot) + TimeEntryTextParser.FIELD_SEPARATOR +
+                             entries.getCategory(slot) + TimeEntryTextParser.FIELD_SEPARATOR +
+                             entries.getDurationSeconds(slot) + TimeEntryTextParser.FIELD_SEPARATOR +
+                             dateFormat.format(new Date(entries.getStartMillis(slot)));
                 writer.write(line);
                 writer.newLine();
             }
@@ -248,44 +661,82 @@ public class TimeEntryRepository
     }
 
     /**
-     * Imports entries from a text file in Python format.
+     * Imports entries from a text file in Python format on a background thread and reports the number of entries taken over.
+     * Cancelling the returned future stops the import and keeps the current entries; the stream is closed in any case.
      */
-    public void importFromTextFile(InputStream inputStream) throws IOException, ParseException
+    public Future<?> importFromTextFileAsync(InputStream inputStream, ImportMode mode, ImportListener importListener)
     {
-        SimpleDateFormat dateFormat = new SimpleDateFormat(PYTHON_DATE_FORMAT, Locale.US);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        List<TimeEntry> importedEntries = new ArrayList<>();
-        try
+        return importExecutor.submit(() ->
         {
-            String line;
-            while ((line = reader.readLine()) != null)
+            try (InputStream input = inputStream)
             {
-                line = line.trim();
-                if (line.isEmpty())
+                EntryStore importedEntries = TimeEntryImporter.importEntries(input, importListener::onProgress);
+                if (mode == ImportMode.MERGE)
                 {
-                    continue;
+                    importListener.onImported(mergeEntries(importedEntries));
                 }
-                String[] parts = line.split(FIELD_SEPARATOR);
-                if (parts.length >= 4)
+                else
                 {
-                    String project = parts[0].trim();
-                    String category = parts[1].trim();
-                    // Parse as double first to handle decimal seconds, then convert to long:
-                    double durationDouble = Double.parseDouble(parts[2].trim());
-                    long duration = (long)durationDouble;
-                    Date startTime = dateFormat.parse(parts[3].trim());
-                    TimeEntry entry = new TimeEntry(project, category, duration, startTime);
-                    importedEntries.add(entry);
+                    replaceEntries(importedEntries);
+                    importListener.onImported(importedEntries.size());
                 }
             }
+            catch (InterruptedException e)
+            {
+                // Cancelled, the current entries stay untouched
+            }
+            catch (IOException | ParseException | RuntimeException e)
+            {
+                importListener.onImportFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Appends the imported entries without an equal current entry as one journal batch, waiting for the stored entries to be loaded first.
+     */
+    private synchronized int mergeEntries(EntryStore importedEntries) throws InterruptedException
+    {
+        while (!isLoaded)
+        {
+            wait();  // Duplicates can only be found among the stored entries
+        }
+        int firstAddedSlot = entries.slotCount();
+        int addedCount = entries.addAllMissing(importedEntries);
+        if (addedCount == 0)
+        {
+            return 0;
+        }
+        boolean isIncremental = addedCount <= MAX_INCREMENTAL_MERGE;
+        List<TimeEntry> addedEntries = new ArrayList<>(addedCount);
+        for (int slot = firstAddedSlot; slot < entries.slotCount(); slot++)
+        {
+            if (isIncremental)
+            {
+                entryIndex.add(entries, slot);
+            }
+            addedEntries.add(entries.get(slot));
         }
-        finally
+        if (!isIncremental)
+        {
+            entryIndex.rebuild(entries);
+        }
+        journal.appendAdds(addedEntries);
+        saveNameSnapshot();
+        notifyDataChanged();
+        return addedCount;
+    }
+
+    private synchronized void replaceEntries(EntryStore newEntries)
+    {
+        isReplacedWhileLoading = !isLoaded;
+        entries = newEntries;
+        entryIndex.rebuild(entries);
+        journal.replaceAll(entries.copy(), null);
+        if (isLoaded)
         {
-            reader.close();
+            saveNameSnapshot();
         }
-        // Replace current entries with imported ones:
-        entries.clear();
-        entries.addAll(importedEntries);
-        saveEntries();
+        notifyDataChanged();
     }
 }
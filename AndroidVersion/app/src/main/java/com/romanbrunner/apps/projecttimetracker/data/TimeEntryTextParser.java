@@ -0,0 +1,279 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import com.romanbrunner.apps.projecttimetracker.util.EpochDays;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regex-free scanner for the Python-compatible text format with one "project --- category --- duration --- start time" entry per line.
+ * Works directly on a char buffer and parses the decimal duration and the "yyyy-MM-dd HH:mm:ss.SSS" start time by hand.
+ */
+class TimeEntryTextParser
+{
+    // Constants:
+    static final String FIELD_SEPARATOR = " --- ";
+    private static final int DECIMAL_BASE = 10;
+    private static final int MAX_DURATION_DIGITS = 18;  // Always fits a long
+    private static final String START_TIME_LAYOUT = "0000-00-00 00:00:00";  // Zeros stand for digits, the fraction of seconds is optional
+    private static final int YEAR_OFFSET = 0;
+    private static final int YEAR_DIGITS = 4;
+    private static final int MONTH_OFFSET = 5;
+    private static final int DAY_OFFSET = 8;
+    private static final int HOUR_OFFSET = 11;
+    private static final int MINUTE_OFFSET = 14;
+    private static final int SECOND_OFFSET = 17;
+    private static final int FIELD_DIGITS = 2;
+    private static final int MILLIS_DIGITS = 3;  // Python writes microseconds, of which only the milliseconds are kept
+    private static final int HOURS_PER_DAY = 24;
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Receives the fields of each parsed line, with the start time resolved in the current time zone.
+     */
+    interface EntryConsumer
+    {
+        void accept(String project, String category, long durationSeconds, long startMillis);
+    }
+
+    private final EntryConsumer consumer;
+    private int lineNumber;
+    private int lineStart;
+
+    TimeEntryTextParser(EntryConsumer consumer, int firstLineNumber)
+    {
+        this.consumer = consumer;
+        this.lineNumber = firstLineNumber;
+    }
+
+    /**
+     * Parses the lines between from and to, the last one may lack its line break.
+     * Lines with fewer than four fields are skipped, malformed durations and start times throw with the line number in the message.
+     */
+    void parseLines(char[] chars, int from, int to) throws ParseException
+    {
+        lineStart = from;
+        for (int position = from; position < to; position++)
+        {
+            if (chars[position] == '\n')
+            {
+                parseLine(chars, lineStart, position);
+                lineStart = position + 1;
+                lineNumber++;
+            }
+        }
+        if (lineStart < to)
+        {
+            parseLine(chars, lineStart, to);
+            lineNumber++;
+        }
+    }
+
+    private void parseLine(char[] chars, int start, int end) throws ParseException
+    {
+        int projectStart = skipWhitespace(chars, start, end);
+        int lineEnd = trimEnd(chars, projectStart, end);
+        int projectEnd = indexOfSeparator(chars, projectStart, lineEnd);
+        int categoryEnd = projectEnd < 0 ? -1 : indexOfSeparator(chars, projectEnd + FIELD_SEPARATOR.length(), lineEnd);
+        int durationEnd = categoryEnd < 0 ? -1 : indexOfSeparator(chars, categoryEnd + FIELD_SEPARATOR.length(), lineEnd);
+        if (durationEnd < 0)
+        {
+            return;
+        }
+        int startTimeStart = durationEnd + FIELD_SEPARATOR.length();
+        int startTimeEnd = indexOfSeparator(chars, startTimeStart, lineEnd);  // Fields after the fourth are ignored
+        String project = toTrimmedString(chars, projectStart, projectEnd);
+        String category = toTrimmedString(chars, projectEnd + FIELD_SEPARATOR.length(), categoryEnd);
+        long durationSeconds = parseDuration(chars, categoryEnd + FIELD_SEPARATOR.length(), durationEnd);
+        long startMillis = parseStartTime(chars, startTimeStart, startTimeEnd < 0 ? lineEnd : startTimeEnd);
+        consumer.accept(project, category, durationSeconds, startMillis);
+    }
+
+    /**
+     * Parses a decimal number of seconds and truncates it toward zero.
+     */
+    private long parseDuration(char[] chars, int start, int end) throws ParseException
+    {
+        int numberStart = skipWhitespace(chars, start, end);
+        int numberEnd = trimEnd(chars, numberStart, end);
+        int position = numberStart;
+        boolean isNegative = position < numberEnd && chars[position] == '-';
+        if (isNegative || position < numberEnd && chars[position] == '+')
+        {
+            position++;
+        }
+        int digitsStart = position;
+        long seconds = 0;
+        while (position < numberEnd && isDigit(chars[position]) && position - digitsStart < MAX_DURATION_DIGITS)
+        {
+            seconds = seconds * DECIMAL_BASE + (chars[position++] - '0');
+        }
+        boolean hasDigits = position > digitsStart;
+        if (position < numberEnd && chars[position] == '.')
+        {
+            int fractionStart = ++position;
+            while (position < numberEnd && isDigit(chars[position]))
+            {
+                position++;
+            }
+            hasDigits |= position > fractionStart;
+        }
+        if (hasDigits && position == numberEnd)
+        {
+            return isNegative ? -seconds : seconds;
+        }
+        // Exponents, huge values and anything else unusual go through the regular parser:
+        String text = new String(chars, numberStart, numberEnd - numberStart);
+        try
+        {
+            return (long)Double.parseDouble(text);
+        }
+        catch (NumberFormatException e)
+        {
+            throw createException("invalid duration \"" + text + "\"", numberStart);
+        }
+    }
+
+    private long parseStartTime(char[] chars, int start, int end) throws ParseException
+    {
+        int textStart = skipWhitespace(chars, start, end);
+        int textEnd = trimEnd(chars, textStart, end);
+        if (!matchesStartTimeLayout(chars, textStart, textEnd))
+        {
+            throw createException("invalid start time \"" + new String(chars, textStart, textEnd - textStart) + "\"", textStart);
+        }
+        int year = parseDigits(chars, textStart + YEAR_OFFSET, YEAR_DIGITS);
+        int month = parseDigits(chars, textStart + MONTH_OFFSET, FIELD_DIGITS);
+        int day = parseDigits(chars, textStart + DAY_OFFSET, FIELD_DIGITS);
+        int hour = parseDigits(chars, textStart + HOUR_OFFSET, FIELD_DIGITS);
+        int minute = parseDigits(chars, textStart + MINUTE_OFFSET, FIELD_DIGITS);
+        int second = parseDigits(chars, textStart + SECOND_OFFSET, FIELD_DIGITS);
+        if (month < 1 || month > EpochDays.MONTHS_PER_YEAR || day < 1 || day > EpochDays.getDaysInPeriod(EpochDays.PeriodUnit.MONTH, EpochDays.of(year, month, 1))
+            || hour >= HOURS_PER_DAY || minute >= MINUTES_PER_HOUR || second >= SECONDS_PER_MINUTE)
+        {
+            throw createException("start time out of range \"" + new String(chars, textStart, textEnd - textStart) + "\"", textStart);
+        }
+        // Keep the first three digits of the fraction, padding shorter fractions:
+        int fractionStart = textStart + START_TIME_LAYOUT.length() + 1;
+        int millis = 0;
+        for (int digit = 0; digit < MILLIS_DIGITS; digit++)
+        {
+            int position = fractionStart + digit;
+            millis = millis * DECIMAL_BASE + (position < textEnd ? chars[position] - '0' : 0);
+        }
+        long millisOfDay = hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + millis;
+        return EpochDays.toMillis(EpochDays.of(year, month, day), millisOfDay);
+    }
+
+    private static boolean matchesStartTimeLayout(char[] chars, int start, int end)
+    {
+        int layoutLength = START_TIME_LAYOUT.length();
+        if (end - start < layoutLength)
+        {
+            return false;
+        }
+        for (int index = 0; index < layoutLength; index++)
+        {
+            char expected = START_TIME_LAYOUT.charAt(index);
+            if (expected == '0' ? !isDigit(chars[start + index]) : chars[start + index] != expected)
+            {
+                return false;
+            }
+        }
+        if (end - start == layoutLength)
+        {
+            return true;
+        }
+        // A fraction of seconds needs at least one digit after the dot:
+        if (chars[start + layoutLength] != '.' || end - start == layoutLength + 1)
+        {
+            return false;
+        }
+        for (int position = start + layoutLength + 1; position < end; position++)
+        {
+            if (!isDigit(chars[position]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseDigits(char[] chars, int start, int count)
+    {
+        int value = 0;
+        for (int position = start; position < start + count; position++)
+        {
+            value = value * DECIMAL_BASE + (chars[position] - '0');
+        }
+        return value;
+    }
+
+    private static int indexOfSeparator(char[] chars, int from, int to)
+    {
+        int lastStart = to - FIELD_SEPARATOR.length();
+        for (int position = from; position <= lastStart; position++)
+        {
+            if (chars[position] == ' ' && regionMatchesSeparator(chars, position))
+            {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatchesSeparator(char[] chars, int start)
+    {
+        for (int index = 1; index < FIELD_SEPARATOR.length(); index++)
+        {
+            if (chars[start + index] != FIELD_SEPARATOR.charAt(index))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toTrimmedString(char[] chars, int start, int end)
+    {
+        int textStart = skipWhitespace(chars, start, end);
+        return new String(chars, textStart, trimEnd(chars, textStart, end) - textStart);
+    }
+
+    /**
+     * Returns the first position that is not whitespace, treating all control characters as whitespace like String.trim().
+     */
+    private static int skipWhitespace(char[] chars, int start, int end)
+    {
+        int position = start;
+        while (position < end && chars[position] <= ' ')
+        {
+            position++;
+        }
+        return position;
+    }
+
+    private static int trimEnd(char[] chars, int start, int end)
+    {
+        int position = end;
+        while (position > start && chars[position - 1] <= ' ')
+        {
+            position--;
+        }
+        return position;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private ParseException createException(String message, int position)
+    {
+        return new ParseException("Line " + lineNumber + ": " + message, position - lineStart);
+    }
+}
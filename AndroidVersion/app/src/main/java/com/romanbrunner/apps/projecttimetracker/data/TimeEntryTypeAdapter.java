@@ -0,0 +1,137 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.romanbrunner.apps.projecttimetracker.model.TimeEntry;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streaming, reflection-free JSON adapter for time entries that stores start times as epoch millis.
+ */
+class TimeEntryTypeAdapter extends TypeAdapter<TimeEntry>
+{
+    // Constants:
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_PROJECT = "project";
+    private static final String FIELD_CATEGORY = "category";
+    private static final String FIELD_DURATION_SECONDS = "durationSeconds";
+    private static final String FIELD_START_TIME = "startTime";
+    private static final String FIELD_PROJECT_ID = "projectId";
+    private static final String FIELD_CATEGORY_ID = "categoryId";
+
+    private final TypeAdapter<Date> legacyDateAdapter = new Gson().getAdapter(Date.class);  // Reads start times written by Gson's default date format
+
+    @Override
+    public void write(JsonWriter writer, TimeEntry entry) throws IOException
+    {
+        if (entry == null)
+        {
+            writer.nullValue();
+            return;
+        }
+        writeEntry(writer, entry.getId(), entry.getProject(), entry.getCategory(), entry.getDurationSeconds(), entry.getStartTime() != null ? entry.getStartTime().getTime() : EntryStore.NO_START);
+    }
+
+    /**
+     * Writes an entry from its field values, so stored rows need not be materialized as objects.
+     */
+    void writeEntry(JsonWriter writer, String id, String project, String category, long durationSeconds, long startMillis) throws IOException
+    {
+        writer.beginObject();
+        writer.name(FIELD_ID).value(id);
+        writer.name(FIELD_PROJECT).value(project);
+        writer.name(FIELD_CATEGORY).value(category);
+        writer.name(FIELD_DURATION_SECONDS).value(durationSeconds);
+        if (startMillis != EntryStore.NO_START)
+        {
+            writer.name(FIELD_START_TIME).value(startMillis);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes an entry whose names are given as indices into a separately written name table.
+     */
+    void writeEncodedEntry(JsonWriter writer, String id, int projectId, int categoryId, long durationSeconds, long startMillis) throws IOException
+    {
+        writer.beginObject();
+        writer.name(FIELD_ID).value(id);
+        writer.name(FIELD_PROJECT_ID).value(projectId);
+        writer.name(FIELD_CATEGORY_ID).value(categoryId);
+        writer.name(FIELD_DURATION_SECONDS).value(durationSeconds);
+        if (startMillis != EntryStore.NO_START)
+        {
+            writer.name(FIELD_START_TIME).value(startMillis);
+        }
+        writer.endObject();
+    }
+
+    @Override
+    public TimeEntry read(JsonReader reader) throws IOException
+    {
+        return readEntry(reader, null);
+    }
+
+    /**
+     * Reads an entry with inline names or, given the name table, with encoded names that share the table's strings.
+     */
+    TimeEntry readEntry(JsonReader reader, List<String> names) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return null;
+        }
+        String id = null;
+        String project = null;
+        String category = null;
+        long durationSeconds = 0;
+        Date startTime = null;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL)
+            {
+                reader.nextNull();
+                continue;
+            }
+            switch (name)
+            {
+                case FIELD_ID:
+                    id = reader.nextString();
+                    break;
+                case FIELD_PROJECT:
+                    project = reader.nextString();
+                    break;
+                case FIELD_CATEGORY:
+                    category = reader.nextString();
+                    break;
+                case FIELD_PROJECT_ID:
+                    project = names.get(reader.nextInt());
+                    break;
+                case FIELD_CATEGORY_ID:
+                    category = names.get(reader.nextInt());
+                    break;
+                case FIELD_DURATION_SECONDS:
+                    durationSeconds = reader.nextLong();
+                    break;
+                case FIELD_START_TIME:
+                    startTime = reader.peek() == JsonToken.NUMBER ? new Date(reader.nextLong()) : legacyDateAdapter.read(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new TimeEntry(id != null ? id : UUID.randomUUID().toString(), project, category, durationSeconds, startTime);
+    }
+}
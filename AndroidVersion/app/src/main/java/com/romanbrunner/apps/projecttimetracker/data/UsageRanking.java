@@ -0,0 +1,151 @@
+package com.romanbrunner.apps.projecttimetracker.data;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Cumulative duration and last-used time per name id, kept up to date on every insert and removal.
+ * Removing a name's latest entry only marks its last-used time as stale, which the next last-used sort recomputes in one pass over the store.
+ */
+class UsageRanking
+{
+    private static final long NEVER_USED = 0;  // Matches the epoch date previously used for names without timed entries
+
+    private static class Usage
+    {
+        long totalSeconds = 0;
+        int entryCount = 0;
+        long latestStartMillis = EntryStore.NO_START;
+        boolean isLatestStale = false;  // The latest entry was removed, so latestStartMillis is only an upper bound
+    }
+
+    private final Map<Integer, Usage> usages = new HashMap<>();
+    private boolean hasStaleLatest = false;
+
+    /**
+     * Counts an entry for the name, startMillis being EntryStore.NO_START for entries without a start time.
+     */
+    void add(int nameId, long durationSeconds, long startMillis)
+    {
+        Usage usage = usages.computeIfAbsent(nameId, k -> new Usage());
+        usage.totalSeconds += durationSeconds;
+        usage.entryCount++;
+        if (startMillis != EntryStore.NO_START && startMillis >= usage.latestStartMillis)
+        {
+            usage.latestStartMillis = startMillis;
+            usage.isLatestStale = false;  // Not below the upper bound, so it is the latest again
+        }
+    }
+
+    void remove(int nameId, long durationSeconds, long startMillis)
+    {
+        Usage usage = usages.get(nameId);
+        if (usage == null)
+        {
+            return;
+        }
+        usage.totalSeconds -= durationSeconds;
+        usage.entryCount--;
+        if (startMillis != EntryStore.NO_START && startMillis == usage.latestStartMillis)
+        {
+            usage.isLatestStale = true;
+            hasStaleLatest = true;
+        }
+        if (usage.entryCount <= 0)
+        {
+            usages.remove(nameId);
+        }
+    }
+
+    void clear()
+    {
+        usages.clear();
+        hasStaleLatest = false;
+    }
+
+    Set<Integer> getNameIds()
+    {
+        return usages.keySet();
+    }
+
+    boolean contains(int nameId)
+    {
+        return usages.containsKey(nameId);
+    }
+
+    long getTotalSeconds(int nameId)
+    {
+        Usage usage = usages.get(nameId);
+        return usage != null ? usage.totalSeconds : 0;
+    }
+
+    /**
+     * Returns the latest start of the name's entries, which is only exact after stale values were recomputed.
+     */
+    private long getLastUsedMillis(int nameId)
+    {
+        Usage usage = usages.get(nameId);
+        return usage != null && usage.latestStartMillis != EntryStore.NO_START ? usage.latestStartMillis : NEVER_USED;
+    }
+
+    /**
+     * Recomputes the stale last-used times with one pass over the store's live rows, nameIdOfRow mapping a row to this ranking's name id.
+     */
+    private void recomputeStaleLatest(EntryStore store, IntUnaryOperator nameIdOfRow)
+    {
+        if (!hasStaleLatest)
+        {
+            return;
+        }
+        Map<Integer, Usage> staleUsages = new HashMap<>();
+        for (Map.Entry<Integer, Usage> usage : usages.entrySet())
+        {
+            if (usage.getValue().isLatestStale)
+            {
+                usage.getValue().latestStartMillis = EntryStore.NO_START;
+                usage.getValue().isLatestStale = false;
+                staleUsages.put(usage.getKey(), usage.getValue());
+            }
+        }
+        hasStaleLatest = false;
+        if (staleUsages.isEmpty())
+        {
+            return;
+        }
+        int count = store.slotCount();
+        for (int row = 0; row < count; row++)
+        {
+            if (store.isRemoved(row))
+            {
+                continue;
+            }
+            Usage usage = staleUsages.get(nameIdOfRow.applyAsInt(row));
+            if (usage != null)
+            {
+                usage.latestStartMillis = Math.max(usage.latestStartMillis, store.getStartMillis(row));  // NO_START is the smallest long, so untimed rows never win
+            }
+        }
+    }
+
+    /**
+     * Sorts names by descending cumulative duration, keeping the given order for ties.
+     */
+    void sortByTotalSeconds(List<String> names, NameDictionary dictionary)
+    {
+        names.sort(Comparator.comparingLong((String name) -> getTotalSeconds(dictionary.getId(name))).reversed());
+    }
+
+    /**
+     * Sorts names by descending last-used time, keeping the given order for ties.
+     */
+    void sortByLastUsed(List<String> names, EntryStore store, IntUnaryOperator nameIdOfRow)
+    {
+        recomputeStaleLatest(store, nameIdOfRow);
+        NameDictionary dictionary = store.getNames();
+        names.sort(Comparator.comparingLong((String name) -> getLastUsedMillis(dictionary.getId(name))).reversed());
+    }
+}
@@ -28,6 +28,15 @@ public class TimeEntry implements Serializable
         this.startTime = startTime;
     }
 
+    public TimeEntry(String id, String project, String category, long durationSeconds, Date startTime)
+    {
+        this.id = id;
+        this.project = project;
+        this.category = category;
+        this.durationSeconds = durationSeconds;
+        this.startTime = startTime;
+    }
+
     // Getters and Setters:
     public String getId()
     {
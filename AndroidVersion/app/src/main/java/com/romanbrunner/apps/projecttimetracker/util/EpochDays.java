@@ -0,0 +1,238 @@
+package com.romanbrunner.apps.projecttimetracker.util;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calendar-free period math on local epoch days, the number of local calendar days since 1970-01-01.
+ * All methods are allocation-free; local days follow the zone's offset at each instant, so days around DST changes are handled correctly.
+ */
+public class EpochDays
+{
+    // Constants:
+    public static final int DAYS_PER_WEEK = 7;
+    public static final int MONTHS_PER_YEAR = 12;
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    private static final int EPOCH_DAY_WEEKDAY_SHIFT = 3;  // 1970-01-01 was a Thursday, three days after Monday
+    // Gregorian calendar cycles, counted in years starting on March 1st so the leap day ends each year:
+    private static final int DAYS_PER_YEAR = 365;
+    private static final int DAYS_PER_FOUR_YEARS = 1461;
+    private static final int DAYS_PER_CENTURY = 36524;
+    private static final int DAYS_PER_ERA = 146097;  // 400 years, after which the calendar repeats
+    private static final int YEARS_PER_ERA = 400;
+    private static final int YEARS_PER_FOUR_YEARS = 4;
+    private static final int YEARS_PER_CENTURY = 100;
+    private static final int ERA_DAY_OF_EPOCH = 719468;  // Days from 0000-03-01 to 1970-01-01
+    private static final int MONTH_DAYS_NUMERATOR = 153;  // Five months starting in March have 153 days
+    private static final int MONTH_DAYS_DENOMINATOR = 5;
+    private static final int MARCH_BASED_MONTH_SHIFT = 3;  // March is month 0 of a March-based year
+    private static final int FIRST_MONTH_AFTER_FEBRUARY = 3;
+
+    public enum PeriodUnit
+    {
+        DAY, WEEK, MONTH, YEAR
+    }
+
+    private static volatile TimeZone timeZone = TimeZone.getDefault();
+
+    /**
+     * Picks up a changed default time zone and returns whether its rules differ from the cached one, which shifts local days.
+     * The zone is cached since TimeZone.getDefault() returns a new copy on each call.
+     */
+    public static boolean refreshTimeZone()
+    {
+        TimeZone defaultZone = TimeZone.getDefault();
+        boolean isChanged = !defaultZone.hasSameRules(timeZone);
+        timeZone = defaultZone;
+        return isChanged;
+    }
+
+    public static long today()
+    {
+        return fromMillis(System.currentTimeMillis());
+    }
+
+    /**
+     * Converts a timestamp to the local epoch day containing it.
+     */
+    public static long fromMillis(long millis)
+    {
+        return Math.floorDiv(millis + timeZone.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the timestamp at which the local epoch day starts.
+     */
+    public static long toMillis(long epochDay)
+    {
+        TimeZone zone = timeZone;
+        long localMidnight = epochDay * MILLIS_PER_DAY;
+        long approximateMillis = localMidnight - zone.getOffset(localMidnight);
+        long offsetBefore = zone.getOffset(approximateMillis - MILLIS_PER_DAY);
+        long offsetAfter = zone.getOffset(approximateMillis + MILLIS_PER_DAY);
+        long candidateBefore = localMidnight - offsetBefore;
+        long candidateAfter = localMidnight - offsetAfter;
+        boolean isBeforeValid = candidateBefore + zone.getOffset(candidateBefore) == localMidnight;
+        boolean isAfterValid = candidateAfter + zone.getOffset(candidateAfter) == localMidnight;
+        if (isBeforeValid && isAfterValid)
+        {
+            return Math.min(candidateBefore, candidateAfter);  // Midnight occurs twice if the clock is set back across it
+        }
+        if (isBeforeValid || isAfterValid)
+        {
+            return isBeforeValid ? candidateBefore : candidateAfter;
+        }
+        // Midnight is skipped if the clock jumps forward across it, then the day starts at the jump:
+        long low = Math.min(candidateBefore, candidateAfter);
+        long high = Math.max(candidateBefore, candidateAfter);
+        while (low < high)
+        {
+            long middle = low + (high - low) / 2;
+            if (fromMillis(middle) >= epochDay)
+            {
+                high = middle;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the timestamp of the local time of day on the epoch day, resolved like a lenient Calendar:
+     * a repeated time maps to its later occurrence and a skipped time is moved forward by the length of the jump.
+     */
+    public static long toMillis(long epochDay, long millisOfDay)
+    {
+        TimeZone zone = timeZone;
+        long localMillis = epochDay * MILLIS_PER_DAY + millisOfDay;
+        long approximateMillis = localMillis - zone.getOffset(localMillis);
+        long candidateBefore = localMillis - zone.getOffset(approximateMillis - MILLIS_PER_DAY);
+        long candidateAfter = localMillis - zone.getOffset(approximateMillis + MILLIS_PER_DAY);
+        boolean isBeforeValid = candidateBefore + zone.getOffset(candidateBefore) == localMillis;
+        boolean isAfterValid = candidateAfter + zone.getOffset(candidateAfter) == localMillis;
+        if (isBeforeValid != isAfterValid)
+        {
+            return isBeforeValid ? candidateBefore : candidateAfter;
+        }
+        return Math.max(candidateBefore, candidateAfter);  // Later occurrence, or for a skipped time the one read with the offset before the jump
+    }
+
+    /**
+     * Returns the epoch day of the given date, with month from 1 to 12.
+     */
+    public static long of(int year, int month, int dayOfMonth)
+    {
+        long marchBasedYear = month < FIRST_MONTH_AFTER_FEBRUARY ? year - 1 : year;
+        long era = Math.floorDiv(marchBasedYear, YEARS_PER_ERA);
+        long yearOfEra = marchBasedYear - era * YEARS_PER_ERA;
+        int marchBasedMonth = Math.floorMod(month - MARCH_BASED_MONTH_SHIFT, MONTHS_PER_YEAR);
+        long dayOfYear = (MONTH_DAYS_NUMERATOR * marchBasedMonth + 2) / MONTH_DAYS_DENOMINATOR + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * DAYS_PER_YEAR + yearOfEra / YEARS_PER_FOUR_YEARS - yearOfEra / YEARS_PER_CENTURY + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - ERA_DAY_OF_EPOCH;
+    }
+
+    public static int getYear(long epochDay)
+    {
+        long shiftedDay = epochDay + ERA_DAY_OF_EPOCH;
+        long era = Math.floorDiv(shiftedDay, DAYS_PER_ERA);
+        long dayOfEra = shiftedDay - era * DAYS_PER_ERA;
+        long yearOfEra = getYearOfEra(dayOfEra);
+        int marchBasedMonth = getMarchBasedMonth(dayOfEra, yearOfEra);
+        long year = yearOfEra + era * YEARS_PER_ERA;
+        return (int)(marchBasedMonth >= MONTHS_PER_YEAR - MARCH_BASED_MONTH_SHIFT + 1 ? year + 1 : year);
+    }
+
+    /**
+     * Returns the month of the epoch day from 1 to 12.
+     */
+    public static int getMonth(long epochDay)
+    {
+        long dayOfEra = Math.floorMod(epochDay + ERA_DAY_OF_EPOCH, (long)DAYS_PER_ERA);
+        int marchBasedMonth = getMarchBasedMonth(dayOfEra, getYearOfEra(dayOfEra));
+        return Math.floorMod(marchBasedMonth + MARCH_BASED_MONTH_SHIFT - 1, MONTHS_PER_YEAR) + 1;
+    }
+
+    public static int getDayOfMonth(long epochDay)
+    {
+        long dayOfEra = Math.floorMod(epochDay + ERA_DAY_OF_EPOCH, (long)DAYS_PER_ERA);
+        long dayOfYear = getDayOfYear(dayOfEra, getYearOfEra(dayOfEra));
+        int marchBasedMonth = (int)((MONTH_DAYS_DENOMINATOR * dayOfYear + 2) / MONTH_DAYS_NUMERATOR);
+        return (int)(dayOfYear - (MONTH_DAYS_NUMERATOR * marchBasedMonth + 2) / MONTH_DAYS_DENOMINATOR + 1);
+    }
+
+    private static long getYearOfEra(long dayOfEra)
+    {
+        return (dayOfEra - dayOfEra / (DAYS_PER_FOUR_YEARS - 1) + dayOfEra / DAYS_PER_CENTURY - dayOfEra / (DAYS_PER_ERA - 1)) / DAYS_PER_YEAR;
+    }
+
+    private static long getDayOfYear(long dayOfEra, long yearOfEra)
+    {
+        return dayOfEra - (DAYS_PER_YEAR * yearOfEra + yearOfEra / YEARS_PER_FOUR_YEARS - yearOfEra / YEARS_PER_CENTURY);
+    }
+
+    private static int getMarchBasedMonth(long dayOfEra, long yearOfEra)
+    {
+        return (int)((MONTH_DAYS_DENOMINATOR * getDayOfYear(dayOfEra, yearOfEra) + 2) / MONTH_DAYS_NUMERATOR);
+    }
+
+    /**
+     * Returns a continuous index of the period containing the epoch day, so the difference of two indexes counts periods.
+     * Weeks are ISO weeks starting on Monday.
+     */
+    public static long getPeriodIndex(PeriodUnit unit, long epochDay)
+    {
+        switch (unit)
+        {
+            case DAY:
+                return epochDay;
+            case WEEK:
+                return Math.floorDiv(epochDay + EPOCH_DAY_WEEKDAY_SHIFT, DAYS_PER_WEEK);
+            case MONTH:
+                return (long)getYear(epochDay) * MONTHS_PER_YEAR + getMonth(epochDay) - 1;
+            case YEAR:
+            default:
+                return getYear(epochDay);
+        }
+    }
+
+    /**
+     * Returns the first epoch day of the period with the given continuous index.
+     */
+    public static long getPeriodStartOfIndex(PeriodUnit unit, long periodIndex)
+    {
+        switch (unit)
+        {
+            case DAY:
+                return periodIndex;
+            case WEEK:
+                return periodIndex * DAYS_PER_WEEK - EPOCH_DAY_WEEKDAY_SHIFT;
+            case MONTH:
+                return of((int)Math.floorDiv(periodIndex, (long)MONTHS_PER_YEAR), (int)Math.floorMod(periodIndex, (long)MONTHS_PER_YEAR) + 1, 1);
+            case YEAR:
+            default:
+                return of((int)periodIndex, 1, 1);
+        }
+    }
+
+    /**
+     * Returns the first epoch day of the period that is the given number of periods away from the one containing the epoch day.
+     */
+    public static long getPeriodStart(PeriodUnit unit, long epochDay, long periodOffset)
+    {
+        return getPeriodStartOfIndex(unit, getPeriodIndex(unit, epochDay) + periodOffset);
+    }
+
+    public static long getPeriodStart(PeriodUnit unit, long epochDay)
+    {
+        return getPeriodStart(unit, epochDay, 0);
+    }
+
+    public static int getDaysInPeriod(PeriodUnit unit, long epochDay)
+    {
+        long periodIndex = getPeriodIndex(unit, epochDay);
+        return (int)(getPeriodStartOfIndex(unit, periodIndex + 1) - getPeriodStartOfIndex(unit, periodIndex));
+    }
+}
@@ -22,6 +22,7 @@ public class PreferencesManager
 
     // Repository preference keys:
     private static final String KEY_ENTRIES = "timeEntries";
+    private static final String KEY_ENTRY_NAMES = "entryNames";
     private static final String KEY_POOLS = "timePools";
 
     private final SharedPreferences appStatePrefs;
@@ -97,9 +98,19 @@ public class PreferencesManager
         return timeEntriesPrefs.getString(KEY_ENTRIES, null);
     }
 
-    public void setTimeEntriesJson(String json)
+    public void removeTimeEntriesJson()
     {
-        timeEntriesPrefs.edit().putString(KEY_ENTRIES, json).apply();
+        timeEntriesPrefs.edit().remove(KEY_ENTRIES).apply();
+    }
+
+    public String getEntryNamesJson()
+    {
+        return timeEntriesPrefs.getString(KEY_ENTRY_NAMES, null);
+    }
+
+    public void setEntryNamesJson(String json)
+    {
+        timeEntriesPrefs.edit().putString(KEY_ENTRY_NAMES, json).apply();
     }
 
     // Time Pools Repository Preferences:
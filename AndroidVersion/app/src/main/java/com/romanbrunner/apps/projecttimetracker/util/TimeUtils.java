@@ -1,6 +1,8 @@
 package com.romanbrunner.apps.projecttimetracker.util;
 
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -11,27 +13,73 @@ import java.util.concurrent.TimeUnit;
 public class TimeUtils
 {
     private static final int SECONDS_PER_MINUTE = 60;
+    private static final int DECIMAL_BASE = 10;
+    public static final int MAX_DURATION_LENGTH = 24;  // Enough for a sign and the hours of Long.MAX_VALUE seconds
 
-    public static final SimpleDateFormat DISPLAY_FORMAT = new SimpleDateFormat("HH:mm dd.MM.yyyy", Locale.getDefault());
+    // Immutable formatters that can be shared between the UI and background threads:
+    public static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("HH:mm dd.MM.yyyy", Locale.getDefault());
 
-    public static final SimpleDateFormat SAVE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+    public static final DateTimeFormatter SAVE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
 
     /**
      * Formats duration in seconds to a human-readable string.
      */
     public static String formatDuration(long totalSeconds)
     {
-        long hours = TimeUnit.SECONDS.toHours(totalSeconds);
-        long minutes = TimeUnit.SECONDS.toMinutes(totalSeconds) % SECONDS_PER_MINUTE;
-        long seconds = totalSeconds % SECONDS_PER_MINUTE;
+        char[] buffer = new char[MAX_DURATION_LENGTH];
+        return new String(buffer, 0, formatDuration(totalSeconds, buffer, 0));
+    }
+
+    /**
+     * Formats a duration into the buffer starting at offset without allocating and returns the end position.
+     * A negative duration is written as a minus sign followed by its magnitude.
+     */
+    public static int formatDuration(long totalSeconds, char[] buffer, int offset)
+    {
+        // Each field is taken from the truncated quotient before dropping its sign, which also works for Long.MIN_VALUE:
+        long hours = Math.abs(TimeUnit.SECONDS.toHours(totalSeconds));
+        long minutes = Math.abs(TimeUnit.SECONDS.toMinutes(totalSeconds) % SECONDS_PER_MINUTE);
+        long seconds = Math.abs(totalSeconds % SECONDS_PER_MINUTE);
+        int position = offset;
+        if (totalSeconds < 0)
+        {
+            buffer[position++] = '-';
+        }
         if (hours > 0)
         {
-            return String.format(Locale.getDefault(), "%d:%02d:%02d", hours, minutes, seconds);
+            position = writeDigits(hours, buffer, position);
+            buffer[position++] = ':';
+            position = writeTwoDigits(minutes, buffer, position);
         }
         else
         {
-            return String.format(Locale.getDefault(), "%d:%02d", minutes, seconds);
+            position = writeDigits(minutes, buffer, position);
+        }
+        buffer[position++] = ':';
+        return writeTwoDigits(seconds, buffer, position);
+    }
+
+    private static int writeDigits(long value, char[] buffer, int position)
+    {
+        int length = 1;
+        for (long rest = value / DECIMAL_BASE; rest > 0; rest /= DECIMAL_BASE)
+        {
+            length++;
         }
+        long rest = value;
+        for (int i = position + length - 1; i >= position; i--)
+        {
+            buffer[i] = (char)('0' + rest % DECIMAL_BASE);
+            rest /= DECIMAL_BASE;
+        }
+        return position + length;
+    }
+
+    private static int writeTwoDigits(long value, char[] buffer, int position)
+    {
+        buffer[position] = (char)('0' + value / DECIMAL_BASE);
+        buffer[position + 1] = (char)('0' + value % DECIMAL_BASE);
+        return position + 2;
     }
 
     /**
@@ -43,7 +91,7 @@ public class TimeUtils
         {
             return "-";
         }
-        return DISPLAY_FORMAT.format(date);
+        return DISPLAY_FORMAT.format(toLocalDateTime(date));
     }
 
     /**
@@ -55,7 +103,7 @@ public class TimeUtils
         {
             return "";
         }
-        return SAVE_FORMAT.format(date);
+        return SAVE_FORMAT.format(toLocalDateTime(date));
     }
 
     /**
@@ -69,7 +117,7 @@ public class TimeUtils
         }
         try
         {
-            return SAVE_FORMAT.parse(dateStr);
+            return Date.from(LocalDateTime.parse(dateStr, SAVE_FORMAT).atZone(ZoneId.systemDefault()).toInstant());
         }
         catch (Exception e)
         {
@@ -77,8 +125,13 @@ public class TimeUtils
         }
     }
 
+    private static LocalDateTime toLocalDateTime(Date date)
+    {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
     /**
-     * Calculates the number of days between two dates (inclusive).
+     * Calculates the number of days between two dates (inclusive), counting full 24-hour days elapsed since the start.
      */
     public static int daysBetween(Date start, Date end)
     {
@@ -91,7 +144,7 @@ public class TimeUtils
     }
 
     /**
-     * Checks if two dates are on the same day.
+     * Checks if two dates are on the same local calendar day.
      */
     public static boolean isSameDay(Date date1, Date date2)
     {
@@ -99,7 +152,6 @@ public class TimeUtils
         {
             return false;
         }
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd", Locale.getDefault());
-        return sdf.format(date1).equals(sdf.format(date2));
+        return EpochDays.fromMillis(date1.getTime()) == EpochDays.fromMillis(date2.getTime());
     }
 }